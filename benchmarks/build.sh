@@ -0,0 +1,14 @@
+cd "$(dirname "$0")" || exit
+
+if [ -z "$JMH_HOME" ]; then
+    echo "JMH_HOME should point to a directory with jmh-core, jmh-generator-annprocess, jopt-simple and commons-math3 jars"
+    exit 1
+fi
+
+rm -rf out
+mkdir -p out
+javac -d out -cp "$JMH_HOME/*" -processorpath "$JMH_HOME/*" \
+      ../java-solutions/ru/ifmo/rain/hakimov/walk/*.java \
+      ../java-solutions/ru/ifmo/rain/hakimov/arrayset/*.java \
+      ru/ifmo/rain/hakimov/walk/*.java \
+      ru/ifmo/rain/hakimov/arrayset/*.java
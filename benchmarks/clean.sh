@@ -0,0 +1,3 @@
+cd "$(dirname "$0")" || exit
+
+rm -rf out
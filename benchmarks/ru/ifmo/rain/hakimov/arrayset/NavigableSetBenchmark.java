@@ -0,0 +1,144 @@
+package ru.ifmo.rain.hakimov.arrayset;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ArraySet} against {@link TreeSet} and {@link ConcurrentSkipListSet} of the same even {@code Integer}s:
+ * construction from a shuffled list, point queries with random probes (half of them miss), full iteration
+ * in both directions and navigation through nested range views.
+ * Run with {@code -prof gc} to see allocation rates next to the throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class NavigableSetBenchmark {
+    private static final int PROBES = 1 << 16;
+
+    public enum Implementation {
+        ARRAY_SET {
+            @Override
+            NavigableSet<Integer> create(Collection<Integer> elements, Comparator<Integer> comparator) {
+                return new ArraySet<>(elements, comparator);
+            }
+        },
+        TREE_SET {
+            @Override
+            NavigableSet<Integer> create(Collection<Integer> elements, Comparator<Integer> comparator) {
+                NavigableSet<Integer> set = new TreeSet<>(comparator);
+                set.addAll(elements);
+                return set;
+            }
+        },
+        SKIP_LIST {
+            @Override
+            NavigableSet<Integer> create(Collection<Integer> elements, Comparator<Integer> comparator) {
+                NavigableSet<Integer> set = new ConcurrentSkipListSet<>(comparator);
+                set.addAll(elements);
+                return set;
+            }
+        };
+
+        abstract NavigableSet<Integer> create(Collection<Integer> elements, Comparator<Integer> comparator);
+    }
+
+    public enum Order {
+        NATURAL(null),
+        COMPARATOR(Comparator.comparingInt(Integer::intValue));
+
+        final Comparator<Integer> comparator;
+
+        Order(Comparator<Integer> comparator) {
+            this.comparator = comparator;
+        }
+    }
+
+    @Param({"ARRAY_SET", "TREE_SET", "SKIP_LIST"})
+    public Implementation implementation;
+
+    @Param({"NATURAL", "COMPARATOR"})
+    public Order order;
+
+    // 100000000 fits only into a much larger heap, pass it with -p size=... -jvmArgsAppend -Xmx...
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    private List<Integer> shuffled;
+    private NavigableSet<Integer> set;
+    private Integer[] probes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        shuffled = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            shuffled.add(2 * i);
+        }
+        Collections.shuffle(shuffled, new Random(size));
+        set = implementation.create(shuffled, order.comparator);
+
+        probes = new Integer[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = ThreadLocalRandom.current().nextInt(2 * size);
+        }
+    }
+
+    private Integer probe() {
+        return probes[next++ & (PROBES - 1)];
+    }
+
+    @Benchmark
+    public NavigableSet<Integer> construct() {
+        return implementation.create(shuffled, order.comparator);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return set.contains(probe());
+    }
+
+    @Benchmark
+    public Integer floor() {
+        return set.floor(probe());
+    }
+
+    @Benchmark
+    public Integer ceiling() {
+        return set.ceiling(probe());
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        for (Integer element : set) {
+            blackhole.consume(element);
+        }
+    }
+
+    @Benchmark
+    public void iterateDescending(Blackhole blackhole) {
+        for (Integer element : set.descendingSet()) {
+            blackhole.consume(element);
+        }
+    }
+
+    /**
+     * Narrows the set three times around the probe and navigates inside the innermost view.
+     */
+    @Benchmark
+    public Integer nestedSubSet() {
+        Integer probe = probe();
+        return set.subSet(probe - size, true, probe + size, false)
+                .descendingSet()
+                .subSet(probe + size / 2, true, probe - size / 2, true)
+                .headSet(probe - size / 4, false)
+                .floor(probe);
+    }
+}
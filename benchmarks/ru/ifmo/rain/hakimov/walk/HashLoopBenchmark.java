@@ -0,0 +1,149 @@
+package ru.ifmo.rain.hakimov.walk;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hash loop of a single file without traversal and output, across buffer sizes and read strategies.
+ * {@code memory} hashes a buffer that is already in memory and shows the cost of the hash function alone,
+ * {@code fileHasher} is the strategy used by the walk itself.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HashLoopBenchmark {
+    @State(Scope.Benchmark)
+    public static class FileState {
+        @Param({"fnv32", "fnv64", "crc32c", "xxh64"})
+        public String hash;
+
+        @Param({"67108864"})
+        public long fileSize;
+
+        HashFunction hashFunction;
+        Path file;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            hashFunction = HashFunctions.forName(hash);
+            file = WalkTrees.createFile(fileSize);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public enum Strategy {
+        HEAP, DIRECT, MAPPED, STREAM
+    }
+
+    @State(Scope.Thread)
+    public static class LoopState {
+        @Param({"4096", "65536", "262144", "1048576"})
+        public int bufferSize;
+
+        @Param({"HEAP", "DIRECT", "MAPPED", "STREAM"})
+        public Strategy strategy;
+
+        ByteBuffer buffer;
+        byte[] bytes;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            switch (strategy) {
+                case HEAP:
+                    buffer = ByteBuffer.allocate(bufferSize);
+                    break;
+                case DIRECT:
+                    buffer = ByteBuffer.allocateDirect(bufferSize);
+                    break;
+                case STREAM:
+                    bytes = new byte[bufferSize];
+                    break;
+                case MAPPED:
+                    break;
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MemoryState {
+        @Param({"fnv32", "fnv64", "crc32c", "xxh64"})
+        public String hash;
+
+        @Param({"4096", "65536", "1048576"})
+        public int bufferSize;
+
+        HashFunction hashFunction;
+        ByteBuffer buffer;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            hashFunction = HashFunctions.forName(hash);
+            byte[] contents = new byte[bufferSize];
+            ThreadLocalRandom.current().nextBytes(contents);
+            buffer = ByteBuffer.allocateDirect(bufferSize).put(contents).flip();
+        }
+    }
+
+    @Benchmark
+    public long read(FileState file, LoopState loop, WalkBenchmark.Counters counters) throws IOException {
+        HashFunction.Hasher hasher = file.hashFunction.newHasher();
+
+        if (loop.strategy == Strategy.STREAM) {
+            try (InputStream input = Files.newInputStream(file.file)) {
+                int read;
+                while ((read = input.read(loop.bytes)) >= 0) {
+                    hasher.update(ByteBuffer.wrap(loop.bytes, 0, read));
+                }
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(file.file, StandardOpenOption.READ)) {
+                if (loop.strategy == Strategy.MAPPED) {
+                    long size = channel.size();
+                    for (long position = 0; position < size; position += loop.bufferSize) {
+                        hasher.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                                Math.min(loop.bufferSize, size - position)));
+                    }
+                } else {
+                    while (channel.read(loop.buffer.clear()) >= 0) {
+                        hasher.update(loop.buffer.flip());
+                    }
+                }
+            }
+        }
+
+        counters.files++;
+        counters.bytes += file.fileSize;
+        return hasher.finish();
+    }
+
+    @Benchmark
+    public long fileHasher(FileState file, WalkBenchmark.Counters counters) throws IOException {
+        long hash = FileHasher.hash(file.file, file.hashFunction, new WalkStatistics());
+        counters.files++;
+        counters.bytes += file.fileSize;
+        return hash;
+    }
+
+    @Benchmark
+    public long memory(MemoryState memory, WalkBenchmark.Counters counters) {
+        HashFunction.Hasher hasher = memory.hashFunction.newHasher();
+        hasher.update(memory.buffer.duplicate());
+        counters.bytes += memory.bufferSize;
+        return hasher.finish();
+    }
+}
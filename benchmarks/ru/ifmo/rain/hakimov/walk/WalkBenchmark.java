@@ -0,0 +1,94 @@
+package ru.ifmo.rain.hakimov.walk;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end walk of synthetic trees: traversal, hashing and formatting of the output, which is discarded.
+ * Besides walks per second, reports {@code files} and {@code bytes} counters normalized per second.
+ * Trees are hashed with a warm page cache.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WalkBenchmark {
+    /**
+     * Files and bytes hashed during the iteration.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long files;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            files = 0;
+            bytes = 0;
+        }
+
+        void add(WalkStatistics statistics) {
+            files += statistics.getFilesHashed();
+            bytes += statistics.getBytesRead();
+        }
+    }
+
+    @Param({"TINY_FILES", "HUGE_FILES", "DEEP_NESTING", "UNREADABLE"})
+    public String shape;
+
+    @Param({"0", "4"})
+    public int threads;
+
+    @Param({"fnv32", "xxh64"})
+    public String hash;
+
+    private Path root;
+    private WalkOptions options;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = WalkTrees.create(WalkTrees.Shape.valueOf(shape));
+
+        List<String> args = new ArrayList<>();
+        if (threads > 0) {
+            args.add("--threads");
+            args.add(Integer.toString(threads));
+        }
+        args.add("--hash");
+        args.add(hash);
+        args.add("input");
+        args.add("output");
+        options = WalkOptions.parse(args.toArray(new String[0]));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        WalkTrees.delete(root);
+    }
+
+    @Benchmark
+    public void walk(Counters counters) throws IOException {
+        WalkStatistics statistics = new WalkStatistics();
+
+        try (ResultWriter resultWriter = new ResultWriter(Writer.nullWriter(), options.hashFunction.bits(), statistics)) {
+            if (options.isParallel()) {
+                try (ParallelHashFileVisitor hashVisitor = new ParallelHashFileVisitor(resultWriter, null,
+                        statistics, options)) {
+                    hashVisitor.walk(root.toString());
+                }
+            } else {
+                new HashFileVisitor(resultWriter, null, statistics, options).walk(root.toString());
+            }
+        }
+        counters.add(statistics);
+    }
+}
@@ -0,0 +1,132 @@
+package ru.ifmo.rain.hakimov.walk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Random;
+
+/**
+ * Synthetic trees for the walk benchmarks. Contents are generated from a fixed seed, so every run hashes the same bytes.
+ */
+class WalkTrees {
+    enum Shape {
+        /**
+         * 20 000 files of up to 1 KiB spread over 200 directories.
+         */
+        TINY_FILES,
+        /**
+         * Four files of 256 MiB each.
+         */
+        HUGE_FILES,
+        /**
+         * A chain of 256 nested directories with a small file on every level.
+         */
+        DEEP_NESTING,
+        /**
+         * Small files mixed with unreadable files, unreadable directories and dangling links.
+         */
+        UNREADABLE
+    }
+
+    private static final long SEED = 0x57414c4bL;
+
+    private WalkTrees() {
+    }
+
+    static Path create(Shape shape) throws IOException {
+        Path root = Files.createTempDirectory("walk-benchmark-" + shape.name().toLowerCase() + "-");
+        Random random = new Random(SEED);
+
+        switch (shape) {
+            case TINY_FILES:
+                for (int dir = 0; dir < 200; dir++) {
+                    Path parent = Files.createDirectory(root.resolve("d" + dir));
+                    for (int file = 0; file < 100; file++) {
+                        write(parent.resolve("f" + file), random.nextInt(1024), random);
+                    }
+                }
+                break;
+            case HUGE_FILES:
+                for (int file = 0; file < 4; file++) {
+                    write(root.resolve("huge" + file), 256L << 20, random);
+                }
+                break;
+            case DEEP_NESTING:
+                Path dir = root;
+                for (int depth = 0; depth < 256; depth++) {
+                    dir = Files.createDirectory(dir.resolve("n" + depth));
+                    write(dir.resolve("f"), 4096, random);
+                }
+                break;
+            case UNREADABLE:
+                for (int file = 0; file < 2000; file++) {
+                    Path path = root.resolve("f" + file);
+                    write(path, random.nextInt(4096), random);
+                    switch (file % 4) {
+                        case 1:
+                            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("---------"));
+                            break;
+                        case 2:
+                            Files.createSymbolicLink(root.resolve("link" + file), root.resolve("missing" + file));
+                            break;
+                        case 3:
+                            Path locked = Files.createDirectory(root.resolve("locked" + file));
+                            write(locked.resolve("f"), 16, random);
+                            Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("---------"));
+                            break;
+                    }
+                }
+                break;
+        }
+        return root;
+    }
+
+    /**
+     * Creates a single file of the given size.
+     */
+    static Path createFile(long size) throws IOException {
+        Path file = Files.createTempFile("walk-benchmark-", ".bin");
+        write(file, size, new Random(SEED));
+        return file;
+    }
+
+    private static void write(Path file, long size, Random random) throws IOException {
+        byte[] block = new byte[1 << 16];
+        try (OutputStream output = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += block.length) {
+                random.nextBytes(block);
+                output.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        }
+    }
+
+    static void delete(Path root) throws IOException {
+        if (root == null || !Files.exists(root, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                // Locked directories can't be opened until they are unlocked
+                Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rwx------"));
+                delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,4 @@
+cd "$(dirname "$0")" || exit
+
+# Arguments are passed to JMH, e.g. `./run.sh WalkBenchmark -p shape=TINY_FILES -rf json -rff walk.json`
+java -cp "out:$JMH_HOME/*" org.openjdk.jmh.Main "$@"
@@ -14,6 +14,7 @@ open module ru.ifmo.rain.hakimov.implementor {
     requires info.kgeorgiy.java.advanced.crawler;
     requires info.kgeorgiy.java.advanced.hello;
     requires java.compiler;
+    requires java.management;
     requires java.base;
     exports ru.ifmo.rain.hakimov.implementor;
 }
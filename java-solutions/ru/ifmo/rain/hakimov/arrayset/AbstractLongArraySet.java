@@ -0,0 +1,163 @@
+package ru.ifmo.rain.hakimov.arrayset;
+
+import java.util.*;
+
+/**
+ * {@link AbstractPrimitiveArraySet} of {@code long} values with allocation-free overloads that take primitives.
+ *
+ * @param <S> type of the views
+ */
+abstract class AbstractLongArraySet<S extends AbstractLongArraySet<S>> extends AbstractPrimitiveArraySet<Long, S> {
+    AbstractLongArraySet(int from, int to, boolean reversed) {
+        super(from, to, reversed);
+    }
+
+    @Override
+    Long box(long element) {
+        return element;
+    }
+
+    @Override
+    long unbox(Object element) {
+        return (Long) element;
+    }
+
+    @Override
+    int hash(long element) {
+        return Long.hashCode(element);
+    }
+
+    public boolean contains(long element) {
+        return indexOf(element) >= 0;
+    }
+
+    /**
+     * Returns the greatest element less than the given one, or {@code absent} if there is no such element.
+     */
+    public long lower(long element, long absent) {
+        return navigate(element, false, true, absent);
+    }
+
+    /**
+     * Returns the greatest element less than or equal to the given one, or {@code absent} if there is no such element.
+     */
+    public long floor(long element, long absent) {
+        return navigate(element, true, true, absent);
+    }
+
+    /**
+     * Returns the least element greater than or equal to the given one, or {@code absent} if there is no such element.
+     */
+    public long ceiling(long element, long absent) {
+        return navigate(element, true, false, absent);
+    }
+
+    /**
+     * Returns the least element greater than the given one, or {@code absent} if there is no such element.
+     */
+    public long higher(long element, long absent) {
+        return navigate(element, false, false, absent);
+    }
+
+    /**
+     * Answers {@link #lower(long, long)} for every probe, writing the answers to the same indices of {@code results}.
+     * Each search starts from the answer to the previous probe, so sorted probes are answered in a single galloping pass.
+     */
+    public void lower(long[] probes, long absent, long[] results) {
+        navigate(probes, absent, results, false, true);
+    }
+
+    /**
+     * Answers {@link #floor(long, long)} for every probe, see {@link #lower(long[], long, long[])}.
+     */
+    public void floor(long[] probes, long absent, long[] results) {
+        navigate(probes, absent, results, true, true);
+    }
+
+    /**
+     * Answers {@link #ceiling(long, long)} for every probe, see {@link #lower(long[], long, long[])}.
+     */
+    public void ceiling(long[] probes, long absent, long[] results) {
+        navigate(probes, absent, results, true, false);
+    }
+
+    /**
+     * Answers {@link #higher(long, long)} for every probe, see {@link #lower(long[], long, long[])}.
+     */
+    public void higher(long[] probes, long absent, long[] results) {
+        navigate(probes, absent, results, false, false);
+    }
+
+    /**
+     * Answers {@link #contains(long)} for every probe, see {@link #lower(long[], long, long[])}.
+     */
+    public void contains(long[] probes, boolean[] results) {
+        ArraySet.checkResults(probes.length, results.length);
+
+        int bound = firstBound();
+        for (int i = 0; i < probes.length; i++) {
+            bound = lowerBound(probes[i], bound);
+            results[i] = isAt(bound, probes[i]);
+        }
+    }
+
+    private void navigate(long[] probes, long absent, long[] results, boolean inclusive, boolean lower) {
+        ArraySet.checkResults(probes.length, results.length);
+
+        int bound = firstBound();
+        for (int i = 0; i < probes.length; i++) {
+            bound = lowerBound(probes[i], bound);
+            int index = answer(probes[i], bound, inclusive, lower);
+            results[i] = index >= 0 ? get(index) : absent;
+        }
+    }
+
+    public long firstLong() {
+        return firstValue();
+    }
+
+    public long lastLong() {
+        return lastValue();
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new LongIterator(false);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong descendingIterator() {
+        return new LongIterator(true);
+    }
+
+    private class LongIterator extends Cursor implements PrimitiveIterator.OfLong {
+        LongIterator(boolean descending) {
+            super(descending);
+        }
+
+        @Override
+        public long nextLong() {
+            return nextValue();
+        }
+    }
+
+    public S subSet(long fromElement, boolean fromInclusive, long toElement, boolean toInclusive) {
+        return subSetOf(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    public S headSet(long toElement, boolean inclusive) {
+        return headSetOf(toElement, inclusive);
+    }
+
+    public S tailSet(long fromElement, boolean inclusive) {
+        return tailSetOf(fromElement, inclusive);
+    }
+
+    public long[] toLongArray() {
+        long[] result = new long[size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = getLong(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,390 @@
+package ru.ifmo.rain.hakimov.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable {@link NavigableSet} of distinct primitive values in natural order, stored by subclasses
+ * in ascending order and read through {@link #get(int)} widened to {@code long}. Views share the storage
+ * of the set they were created from and see the range {@code [from, to)} of it, in reversed order if {@code reversed}.
+ * Subclasses add the allocation-free overloads that take their primitive type on top of the methods here.
+ *
+ * @param <T> boxed type of the elements
+ * @param <S> type of the views
+ */
+abstract class AbstractPrimitiveArraySet<T, S extends AbstractPrimitiveArraySet<T, S>> extends AbstractSet<T>
+        implements NavigableSet<T> {
+    private static final String NO_SUCH_ELEMENT_MESSAGE = " is empty! Can't get ";
+    private static final String UNSUPPORTED_OPERATION_MESSAGE = " is immutable, operation can't be performed: ";
+
+    private final int from;
+    private final int to;
+    private final boolean reversed;
+
+    AbstractPrimitiveArraySet(int from, int to, boolean reversed) {
+        this.from = from;
+        this.to = to;
+        this.reversed = reversed;
+    }
+
+    /**
+     * Returns the element at the given index of the shared storage.
+     */
+    abstract long get(int index);
+
+    /**
+     * Creates a view of the range {@code [from, to)} of the shared storage.
+     */
+    abstract S view(int from, int to, boolean reversed);
+
+    abstract T box(long element);
+
+    /**
+     * Returns the value of a boxed element, throwing {@link ClassCastException} if it has another type.
+     */
+    abstract long unbox(Object element);
+
+    /**
+     * Returns the same hash code as the boxed element has.
+     */
+    abstract int hash(long element);
+
+    /**
+     * Same as {@link Arrays#binarySearch(long[], int, int, long)} over the shared storage.
+     */
+    int binarySearch(int from, int to, long element) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long value = get(middle);
+            if (value < element) {
+                low = middle + 1;
+            } else if (value > element) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -low - 1;
+    }
+
+    /**
+     * Returns index of the first element that is greater than (or equal to, if {@code inclusive}) the given one.
+     */
+    private int lowerBound(long element, boolean inclusive) {
+        int index = binarySearch(from, to, element);
+        return index >= 0 ? (inclusive ? index : index + 1) : -index - 1;
+    }
+
+    /**
+     * Returns index after the last element that is less than (or equal to, if {@code inclusive}) the given one.
+     */
+    private int upperBound(long element, boolean inclusive) {
+        int index = binarySearch(from, to, element);
+        return index >= 0 ? (inclusive ? index + 1 : index) : -index - 1;
+    }
+
+    /**
+     * Returns index in the shared array of the element at the given index of this view.
+     */
+    int baseIndex(int index) {
+        return reversed ? to - 1 - index : from + index;
+    }
+
+    private int viewIndex(int baseIndex) {
+        return reversed ? to - 1 - baseIndex : baseIndex - from;
+    }
+
+    long getLong(int index) {
+        return get(baseIndex(index));
+    }
+
+    /**
+     * Returns index of the element in this view, or {@code -1} if there is no such element.
+     */
+    int indexOf(long element) {
+        int index = binarySearch(from, to, element);
+        return index >= 0 ? viewIndex(index) : -1;
+    }
+
+    /**
+     * Returns index in this view of the element that {@code lower}, {@code floor}, {@code ceiling} or {@code higher}
+     * would return, which is {@code -1} or {@code size()} if there is no such element.
+     */
+    int getIndex(long element, boolean inclusive, boolean lower) {
+        if (lower != reversed) {
+            return viewIndex(upperBound(element, inclusive) - 1);
+        } else {
+            return viewIndex(lowerBound(element, inclusive));
+        }
+    }
+
+    /**
+     * Returns the element that {@code lower}, {@code floor}, {@code ceiling} or {@code higher} would return,
+     * or {@code absent} if there is no such element.
+     */
+    long navigate(long element, boolean inclusive, boolean lower, long absent) {
+        int index = getIndex(element, inclusive, lower);
+        return 0 <= index && index < size() ? getLong(index) : absent;
+    }
+
+    /**
+     * Returns the initial hint of a batch query, see {@link #lowerBound(long, int)}.
+     */
+    int firstBound() {
+        return from;
+    }
+
+    /**
+     * Returns index in the shared array of the answer to a batch query for the probe, or {@code -1} if there is
+     * no answer. {@code bound} is {@link #lowerBound(long, int)} of the probe.
+     */
+    int answer(long probe, int bound, boolean inclusive, boolean lower) {
+        boolean found = isAt(bound, probe);
+
+        int index;
+        if (lower != reversed) {
+            index = (inclusive && found ? bound + 1 : bound) - 1;
+        } else {
+            index = inclusive || !found ? bound : bound + 1;
+        }
+        return from <= index && index < to ? index : -1;
+    }
+
+    /**
+     * Checks if the element is at the given index of the shared storage, which may be the end of this view.
+     */
+    boolean isAt(int index, long element) {
+        return index < to && get(index) == element;
+    }
+
+    /**
+     * Returns index of the first element that isn't less than the given one, galloping from {@code hint}
+     * in either direction, so a batch of sorted probes is answered in a single pass.
+     */
+    int lowerBound(long element, int hint) {
+        int low;
+        int high;
+        if (hint < to && get(hint) < element) {
+            // The answer is in (low, high]
+            low = hint;
+            int step = 1;
+            while (low + step < to && get(low + step) < element) {
+                low += step;
+                step <<= 1;
+            }
+            high = Math.min(low + step, to);
+        } else if (hint > from && get(hint - 1) >= element) {
+            high = hint - 1;
+            int step = 1;
+            while (high - step >= from && get(high - step) >= element) {
+                high -= step;
+                step <<= 1;
+            }
+            low = Math.max(high - step, from - 1);
+        } else {
+            return hint;
+        }
+
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (get(middle) < element) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return high;
+    }
+
+    private T boxed(int index) {
+        return 0 <= index && index < size() ? box(getLong(index)) : null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(unbox(o)) >= 0;
+    }
+
+    @Override
+    public T lower(T element) {
+        return boxed(getIndex(unbox(element), false, true));
+    }
+
+    @Override
+    public T floor(T element) {
+        return boxed(getIndex(unbox(element), true, true));
+    }
+
+    @Override
+    public T ceiling(T element) {
+        return boxed(getIndex(unbox(element), true, false));
+    }
+
+    @Override
+    public T higher(T element) {
+        return boxed(getIndex(unbox(element), false, false));
+    }
+
+    long firstValue() {
+        if (isEmpty()) {
+            throw new NoSuchElementException(getClass().getSimpleName() + NO_SUCH_ELEMENT_MESSAGE + "first element.");
+        }
+        return get(reversed ? to - 1 : from);
+    }
+
+    long lastValue() {
+        if (isEmpty()) {
+            throw new NoSuchElementException(getClass().getSimpleName() + NO_SUCH_ELEMENT_MESSAGE + "last element.");
+        }
+        return get(reversed ? from : to - 1);
+    }
+
+    @Override
+    public T first() {
+        return box(firstValue());
+    }
+
+    @Override
+    public T last() {
+        return box(lastValue());
+    }
+
+    /**
+     * Walks the indices of the shared storage in the order of this view, or in the opposite one if {@code descending}.
+     * Subclasses turn it into primitive iterators.
+     */
+    class Cursor {
+        private int index;
+        private final int step;
+
+        Cursor(boolean descending) {
+            boolean backwards = reversed != descending;
+            this.index = backwards ? to - 1 : from;
+            this.step = backwards ? -1 : 1;
+        }
+
+        public boolean hasNext() {
+            return from <= index && index < to;
+        }
+
+        long nextValue() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long element = get(index);
+            index += step;
+            return element;
+        }
+    }
+
+    @Override
+    public S descendingSet() {
+        return view(from, to, !reversed);
+    }
+
+    private S range(int fromIndex, int toIndex) {
+        return view(fromIndex, Math.max(fromIndex, toIndex), reversed);
+    }
+
+    S subSetOf(long fromElement, boolean fromInclusive, long toElement, boolean toInclusive) {
+        if (reversed ? fromElement < toElement : fromElement > toElement) {
+            throw new IllegalArgumentException(fromElement + " should be less than " + toElement + "!");
+        }
+        return reversed
+                ? range(lowerBound(toElement, toInclusive), upperBound(fromElement, fromInclusive))
+                : range(lowerBound(fromElement, fromInclusive), upperBound(toElement, toInclusive));
+    }
+
+    S headSetOf(long toElement, boolean inclusive) {
+        return reversed ? range(lowerBound(toElement, inclusive), to) : range(from, upperBound(toElement, inclusive));
+    }
+
+    S tailSetOf(long fromElement, boolean inclusive) {
+        return reversed ? range(from, upperBound(fromElement, inclusive)) : range(lowerBound(fromElement, inclusive), to);
+    }
+
+    @Override
+    public S subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        return subSetOf(unbox(fromElement), fromInclusive, unbox(toElement), toInclusive);
+    }
+
+    @Override
+    public S headSet(T toElement, boolean inclusive) {
+        return headSetOf(unbox(toElement), inclusive);
+    }
+
+    @Override
+    public S tailSet(T fromElement, boolean inclusive) {
+        return tailSetOf(unbox(fromElement), inclusive);
+    }
+
+    @Override
+    public S subSet(T fromElement, T toElement) {
+        return subSetOf(unbox(fromElement), true, unbox(toElement), false);
+    }
+
+    @Override
+    public S headSet(T toElement) {
+        return headSetOf(unbox(toElement), false);
+    }
+
+    @Override
+    public S tailSet(T fromElement) {
+        return tailSetOf(unbox(fromElement), true);
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return reversed ? Collections.reverseOrder() : null;
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 0;
+        for (int i = from; i < to; i++) {
+            hashCode += hash(get(i));
+        }
+        return hashCode;
+    }
+
+    @Override
+    public T pollFirst() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + UNSUPPORTED_OPERATION_MESSAGE + "pollFirst");
+    }
+
+    @Override
+    public T pollLast() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + UNSUPPORTED_OPERATION_MESSAGE + "pollLast");
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> collection) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + UNSUPPORTED_OPERATION_MESSAGE + "addAll");
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + UNSUPPORTED_OPERATION_MESSAGE + "retainAll");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + UNSUPPORTED_OPERATION_MESSAGE + "clear");
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + UNSUPPORTED_OPERATION_MESSAGE + "remove");
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + UNSUPPORTED_OPERATION_MESSAGE + "removeAll");
+    }
+}
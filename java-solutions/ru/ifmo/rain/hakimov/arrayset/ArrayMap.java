@@ -0,0 +1,294 @@
+package ru.ifmo.rain.hakimov.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable {@link NavigableMap} over parallel arrays of sorted keys and their values.
+ * Keys are an {@link ArraySet}, so range and descending views share both arrays and cost nothing to create.
+ */
+public class ArrayMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+    private final ArraySet<K> keys;
+    private final Object[] values;
+
+    public ArrayMap() {
+        this(Collections.emptyMap(), null);
+    }
+
+    public ArrayMap(Comparator<? super K> comparator) {
+        this(Collections.emptyMap(), comparator);
+    }
+
+    public ArrayMap(Map<? extends K, ? extends V> map) {
+        this(map, null);
+    }
+
+    /**
+     * Creates a map with the mappings of the given one. If the comparator considers several keys equal,
+     * the first of them is kept with the value of the last one, like {@link TreeMap#putAll} does.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ArrayMap(Map<? extends K, ? extends V> map, Comparator<? super K> comparator) {
+        Map.Entry<K, V>[] entries = map.entrySet().toArray(new Map.Entry[0]);
+        // Natural order rejects null keys, but a comparator may accept them
+        for (int i = 0; comparator == null && i < entries.length; i++) {
+            Objects.requireNonNull(entries[i].getKey(), "ArrayMap can't contain null keys");
+        }
+        Comparator<? super K> order = comparator == null ? (Comparator<? super K>) Comparator.naturalOrder() : comparator;
+
+        boolean sorted = map instanceof SortedMap && Objects.equals(((SortedMap<?, ?>) map).comparator(), comparator);
+        for (int i = 1; !sorted && i < entries.length; i++) {
+            if (order.compare(entries[i - 1].getKey(), entries[i].getKey()) > 0) {
+                Arrays.parallelSort(entries, (first, second) -> order.compare(first.getKey(), second.getKey()));
+                break;
+            }
+        }
+
+        Object[] keys = new Object[entries.length];
+        Object[] values = new Object[entries.length];
+        int size = 0;
+        for (Map.Entry<K, V> entry : entries) {
+            K key = entry.getKey();
+            if (size == 0 || order.compare((K) keys[size - 1], key) != 0) {
+                keys[size++] = key;
+            }
+            values[size - 1] = entry.getValue();
+        }
+
+        this.keys = new ArraySet<>(size == keys.length ? keys : Arrays.copyOf(keys, size), comparator);
+        this.values = size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    private ArrayMap(ArraySet<K> keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int index) {
+        return (V) values[keys.baseIndex(index)];
+    }
+
+    private Entry<K, V> entry(int index) {
+        return 0 <= index && index < size() ? new SimpleImmutableEntry<>(keys.get(index), value(index)) : null;
+    }
+
+    @Override
+    public int size() {
+        return keys.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(Object key) {
+        int index = keys.binarySearch((K) key);
+        return index >= 0 ? value(index) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return keys.contains(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (int i = 0; i < size(); i++) {
+            if (Objects.equals(value(i), value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Entry<K, V> lowerEntry(K key) {
+        return entry(keys.getIndex(key, false, true));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keys.lower(key);
+    }
+
+    @Override
+    public Entry<K, V> floorEntry(K key) {
+        return entry(keys.getIndex(key, true, true));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keys.floor(key);
+    }
+
+    @Override
+    public Entry<K, V> ceilingEntry(K key) {
+        return entry(keys.getIndex(key, true, false));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keys.ceiling(key);
+    }
+
+    @Override
+    public Entry<K, V> higherEntry(K key) {
+        return entry(keys.getIndex(key, false, false));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keys.higher(key);
+    }
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        return entry(0);
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return entry(size() - 1);
+    }
+
+    @Override
+    public K firstKey() {
+        return keys.first();
+    }
+
+    @Override
+    public K lastKey() {
+        return keys.last();
+    }
+
+    @Override
+    public ArrayMap<K, V> descendingMap() {
+        return new ArrayMap<>(keys.descendingSet(), values);
+    }
+
+    @Override
+    public ArraySet<K> keySet() {
+        return keys;
+    }
+
+    @Override
+    public ArraySet<K> navigableKeySet() {
+        return keys;
+    }
+
+    @Override
+    public ArraySet<K> descendingKeySet() {
+        return keys.descendingSet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractList<>() {
+            @Override
+            public V get(int index) {
+                Objects.checkIndex(index, size());
+                return value(index);
+            }
+
+            @Override
+            public int size() {
+                return ArrayMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new Iterator<>() {
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < size();
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return entry(index++);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ArrayMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public ArrayMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        return new ArrayMap<>(keys.subSet(fromKey, fromInclusive, toKey, toInclusive), values);
+    }
+
+    @Override
+    public ArrayMap<K, V> headMap(K toKey, boolean inclusive) {
+        return new ArrayMap<>(keys.headSet(toKey, inclusive), values);
+    }
+
+    @Override
+    public ArrayMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return new ArrayMap<>(keys.tailSet(fromKey, inclusive), values);
+    }
+
+    @Override
+    public ArrayMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public ArrayMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public ArrayMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return keys.comparator();
+    }
+
+    private static final String UNSUPPORTED_OPERATION_MESSAGE = "ArrayMap is immutable, operation can't be performed: ";
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE + "pollFirstEntry");
+    }
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE + "pollLastEntry");
+    }
+
+    @Override
+    public V put(K key, V value) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE + "put");
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE + "putAll");
+    }
+
+    @Override
+    public V remove(Object key) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE + "remove");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE + "clear");
+    }
+}
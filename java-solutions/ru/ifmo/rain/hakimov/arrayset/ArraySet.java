@@ -1,80 +1,198 @@
 package ru.ifmo.rain.hakimov.arrayset;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 @SuppressWarnings("unused")
 public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
-    private static class ReversibleArrayList<T> extends AbstractList<T> implements RandomAccess {
-        List<T> data;
-        boolean reversed;
+    /**
+     * Memory layout used to search elements.
+     */
+    public enum SearchLayout {
+        /**
+         * Binary search over the sorted elements.
+         */
+        SORTED,
+        /**
+         * Additional copy of the elements in Eytzinger (breadth-first) order: the first levels of the implicit
+         * search tree share a few cache lines, which speeds up lookups in sets with millions of elements.
+         * Only the set itself uses it, its views search the sorted elements.
+         */
+        EYTZINGER
+    }
+
+    // Views share the sorted elements and see the range [from, to) of them, in reversed order if reversed
+    private final Object[] elements;
+    private final int from;
+    private final int to;
+    private final boolean reversed;
+    private final Comparator<? super E> baseComparator;
+    private final Comparator<? super E> comparator;
+    private final Object[] eytzinger;
+    private final int[] ranks;
 
-        ReversibleArrayList(Collection<T> collection) {
-            this.data = List.copyOf(collection);
-            this.reversed = false;
-        }
+    public ArraySet() {
+        this(Collections.emptyList(), null);
+    }
 
-        ReversibleArrayList(List<T> list) {
-            this.data = Collections.unmodifiableList(list);
-            this.reversed = false;
-        }
+    public ArraySet(Comparator<? super E> comparator) {
+        this(Collections.emptyList(), comparator);
+    }
 
-        ReversibleArrayList(ReversibleArrayList<T> reversedArray, boolean reversed) {
-            this.data = reversedArray.data;
-            this.reversed = reversedArray.reversed ^ reversed;
-        }
 
-        private int reversedIndex(int index) {
-            return size() - index - 1;
-        }
+    public ArraySet(Collection<? extends E> collection) {
+        this(collection, null);
+    }
 
-        @Override
-        public ReversibleArrayList<T> subList(int fromIndex, int toIndex) {
-            if (reversed) {
-                return new ReversibleArrayList<>(data.subList(reversedIndex(toIndex - 1),
-                        reversedIndex(fromIndex) + 1));
-            } else {
-                return new ReversibleArrayList<>(data.subList(fromIndex, toIndex));
-            }
-        }
+    public ArraySet(Collection<? extends E> collection, Comparator<? super E> comparator) {
+        this(collection, comparator, SearchLayout.SORTED);
+    }
 
-        public void reverse() {
-            reversed ^= true;
-        }
+    public ArraySet(Collection<? extends E> collection, Comparator<? super E> comparator, SearchLayout layout) {
+        this(collection, comparator, layout, isSortedBy(collection, comparator));
+    }
 
-        @Override
-        public T get(int index) {
-            return data.get(reversed ? reversedIndex(index) : index);
-        }
+    private ArraySet(Collection<? extends E> collection, Comparator<? super E> comparator, SearchLayout layout,
+                     boolean sorted) {
+        E[] elements = toSortedArray(collection, comparator, sorted);
 
-        @Override
-        public int size() {
-            return data.size();
+        this.elements = elements;
+        this.from = 0;
+        this.to = elements.length;
+        this.reversed = false;
+        this.baseComparator = comparator;
+        this.comparator = comparator;
+
+        if (layout == SearchLayout.EYTZINGER) {
+            eytzinger = new Object[elements.length + 1];
+            ranks = new int[elements.length + 1];
+            fillEytzinger(elements, 0, 1);
+        } else {
+            eytzinger = null;
+            ranks = null;
         }
     }
 
-    private final ReversibleArrayList<E> data;
-    private final Comparator<? super E> comparator;
+    /**
+     * Creates a set from elements that are already sorted by the comparator, skipping the sortedness check.
+     * Equal elements are allowed, the first of them is kept.
+     */
+    public static <E> ArraySet<E> ofSorted(Collection<? extends E> collection, Comparator<? super E> comparator) {
+        return ofSorted(collection, comparator, SearchLayout.SORTED);
+    }
 
-    public ArraySet() {
-        this(Collections.emptyList(), null);
+    public static <E> ArraySet<E> ofSorted(Collection<? extends E> collection, Comparator<? super E> comparator,
+                                           SearchLayout layout) {
+        return new ArraySet<>(collection, comparator, layout, true);
     }
 
-    public ArraySet(Comparator<? super E> comparator) {
-        this(Collections.emptyList(), comparator);
+    private static boolean isSortedBy(Collection<?> collection, Comparator<?> comparator) {
+        return collection instanceof SortedSet && Objects.equals(((SortedSet<?>) collection).comparator(), comparator);
     }
 
+    /**
+     * Copies elements to an array sorted by the comparator without equal elements, keeping the first of equal ones
+     * like {@link TreeSet} does. Sorted input is detected in a linear pass, other input is sorted
+     * with {@link Arrays#parallelSort}, which is stable.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> E[] toSortedArray(Collection<? extends E> collection, Comparator<? super E> comparator,
+                                         boolean sorted) {
+        E[] elements = (E[]) collection.toArray();
+        // Natural order rejects nulls, but a comparator may accept them
+        for (int i = 0; comparator == null && i < elements.length; i++) {
+            Objects.requireNonNull(elements[i], "ArraySet can't contain null elements");
+        }
 
-    public ArraySet(Collection<? extends E> collection) {
-        this(collection, null);
+        Comparator<? super E> order = comparator == null ? (Comparator<? super E>) Comparator.naturalOrder() : comparator;
+        for (int i = 1; !sorted && i < elements.length; i++) {
+            if (order.compare(elements[i - 1], elements[i]) > 0) {
+                Arrays.parallelSort(elements, order);
+                break;
+            }
+        }
+
+        int size = 0;
+        for (int i = 0; i < elements.length; i++) {
+            if (size == 0 || order.compare(elements[size - 1], elements[i]) != 0) {
+                elements[size++] = elements[i];
+            }
+        }
+        return size == elements.length ? elements : Arrays.copyOf(elements, size);
+    }
+
+    /**
+     * Fills the subtree rooted at node {@code k} (nodes are numbered from 1, children of {@code k} are
+     * {@code 2k} and {@code 2k + 1}) by an in-order walk, starting from the given sorted index.
+     * Returns the sorted index after the subtree.
+     */
+    private int fillEytzinger(E[] elements, int index, int k) {
+        if (k < eytzinger.length) {
+            index = fillEytzinger(elements, index, 2 * k);
+            eytzinger[k] = elements[index];
+            ranks[k] = index++;
+            index = fillEytzinger(elements, index, 2 * k + 1);
+        }
+        return index;
     }
 
-    public ArraySet(Collection<? extends E> collection, Comparator<? super E> comparator) {
+    @SuppressWarnings("unchecked")
+    private int eytzingerSearch(E o) {
+        int k = 1;
+        while (k < eytzinger.length) {
+            // A branch rather than arithmetic: speculation starts loading the next level before the comparison ends
+            if (compare((E) eytzinger[k], o) < 0) {
+                k = 2 * k + 1;
+            } else {
+                k = 2 * k;
+            }
+        }
+        // The descent ends after the last left turn, whose node is the first element that isn't less than o
+        k >>= Integer.numberOfTrailingZeros(~k) + 1;
+
+        if (k == 0) {
+            return -size() - 1;
+        }
+        return compare((E) eytzinger[k], o) == 0 ? ranks[k] : -ranks[k] - 1;
+    }
+
+    /**
+     * Creates a set over elements that are sorted by the comparator and distinct, without copying them.
+     */
+    ArraySet(Object[] elements, Comparator<? super E> comparator) {
+        this.elements = elements;
+        this.from = 0;
+        this.to = elements.length;
+        this.reversed = false;
+        this.baseComparator = comparator;
         this.comparator = comparator;
+        this.eytzinger = null;
+        this.ranks = null;
+    }
+
+    private ArraySet(ArraySet<E> base, int from, int to, boolean reversed) {
+        this.elements = base.elements;
+        this.from = from;
+        this.to = to;
+        this.reversed = reversed;
+        this.baseComparator = base.baseComparator;
+        this.comparator = reversed ? Collections.reverseOrder(baseComparator) : baseComparator;
+        this.eytzinger = base.eytzinger;
+        this.ranks = base.ranks;
+    }
 
-        TreeSet<E> tmp = new TreeSet<>(comparator);
-        tmp.addAll(collection);
+    /**
+     * Returns index in the shared array of the element at the given index of this view.
+     */
+    int baseIndex(int index) {
+        return reversed ? to - 1 - index : from + index;
+    }
 
-        data = new ReversibleArrayList<>(tmp);
+    @SuppressWarnings("unchecked")
+    E get(int index) {
+        return (E) elements[baseIndex(index)];
     }
 
     private boolean isValid(int index) {
@@ -82,11 +200,28 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     private E getNullable(int index) {
-        return isValid(index) ? data.get(index) : null;
+        return isValid(index) ? get(index) : null;
     }
 
-    private int binarySearch(E o) {
-        return Collections.binarySearch(data, (E) o, this::compare);
+    int binarySearch(E o) {
+        if (eytzinger != null && !reversed && from == 0 && to == elements.length) {
+            return eytzingerSearch(o);
+        }
+
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(get(middle), o);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -low - 1;
     }
 
     @SuppressWarnings("unchecked")
@@ -97,7 +232,80 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
 
     @Override
     public Iterator<E> iterator() {
-        return data.iterator();
+        return new Iterator<>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(index++);
+            }
+        };
+    }
+
+    /**
+     * Returns a spliterator that splits the range of the set in halves, so parallel streams scale.
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new ArraySpliterator(0, size());
+    }
+
+    private class ArraySpliterator implements Spliterator<E> {
+        private int index;
+        private final int fence;
+
+        ArraySpliterator(int index, int fence) {
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int middle = (index + fence) >>> 1;
+            return middle > index ? new ArraySpliterator(index, index = middle) : null;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            if (index < fence) {
+                action.accept(get(index++));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            while (index < fence) {
+                action.accept(get(index++));
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        // Only natural ordering rules out null elements
+        @Override
+        public int characteristics() {
+            return SIZED | SUBSIZED | SORTED | DISTINCT | ORDERED | IMMUTABLE | (baseComparator == null ? NONNULL : 0);
+        }
+
+        @Override
+        public Comparator<? super E> getComparator() {
+            return comparator;
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -105,7 +313,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         return (comparator == null) ? ((Comparable<E>) e1).compareTo(e2) : comparator.compare(e1, e2);
     }
 
-    private int getIndex(E element, boolean inclusive, boolean lower) {
+    int getIndex(E element, boolean inclusive, boolean lower) {
         int index = binarySearch(element);
 
         if (index >= 0) {
@@ -135,6 +343,122 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         return getNullable(getIndex(element, false, false));
     }
 
+    private enum Navigation {
+        LOWER, FLOOR, CEILING, HIGHER
+    }
+
+    /**
+     * Answers {@link #lower} for every probe, writing the answers to the same indices of {@code results}.
+     * Each search starts from the answer to the previous probe, so probes sorted in the order of this set
+     * are answered in a single galloping pass.
+     */
+    public void lower(List<? extends E> probes, E[] results) {
+        navigate(probes, results, Navigation.LOWER);
+    }
+
+    /**
+     * Answers {@link #floor} for every probe, see {@link #lower(List, Object[])}.
+     */
+    public void floor(List<? extends E> probes, E[] results) {
+        navigate(probes, results, Navigation.FLOOR);
+    }
+
+    /**
+     * Answers {@link #ceiling} for every probe, see {@link #lower(List, Object[])}.
+     */
+    public void ceiling(List<? extends E> probes, E[] results) {
+        navigate(probes, results, Navigation.CEILING);
+    }
+
+    /**
+     * Answers {@link #higher} for every probe, see {@link #lower(List, Object[])}.
+     */
+    public void higher(List<? extends E> probes, E[] results) {
+        navigate(probes, results, Navigation.HIGHER);
+    }
+
+    /**
+     * Answers {@link #contains} for every probe, see {@link #lower(List, Object[])}.
+     */
+    public void contains(List<? extends E> probes, boolean[] results) {
+        checkResults(probes.size(), results.length);
+
+        int index = 0;
+        int bound = 0;
+        for (E probe : probes) {
+            bound = lowerBound(probe, bound);
+            results[index++] = bound < size() && compare(get(bound), probe) == 0;
+        }
+    }
+
+    private void navigate(List<? extends E> probes, E[] results, Navigation navigation) {
+        checkResults(probes.size(), results.length);
+
+        int index = 0;
+        int bound = 0;
+        for (E probe : probes) {
+            bound = lowerBound(probe, bound);
+            boolean found = bound < size() && compare(get(bound), probe) == 0;
+
+            int result;
+            switch (navigation) {
+                case LOWER:
+                    result = bound - 1;
+                    break;
+                case FLOOR:
+                    result = found ? bound : bound - 1;
+                    break;
+                case CEILING:
+                    result = bound;
+                    break;
+                default:
+                    result = found ? bound + 1 : bound;
+                    break;
+            }
+            results[index++] = getNullable(result);
+        }
+    }
+
+    static void checkResults(int probes, int results) {
+        if (results < probes) {
+            throw new IllegalArgumentException("Results array of length " + results + " can't hold answers for "
+                    + probes + " probes!");
+        }
+    }
+
+    /**
+     * Returns index of the first element that isn't less than the given one, galloping from {@code hint}
+     * in either direction.
+     */
+    private int lowerBound(E element, int hint) {
+        int low;
+        int high;
+        if (hint < size() && compare(get(hint), element) < 0) {
+            return gallop(hint, size(), element);
+        } else if (hint > 0 && compare(get(hint - 1), element) >= 0) {
+            // The answer is in (low, high]
+            high = hint - 1;
+            int step = 1;
+            while (high - step >= 0 && compare(get(high - step), element) >= 0) {
+                high -= step;
+                step <<= 1;
+            }
+            low = Math.max(high - step, -1);
+        } else {
+            return hint;
+        }
+
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (compare(get(middle), element) < 0) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return high;
+    }
+
     private final String UNSUPPORTED_OPERATION_MESSAGE = "ArraySet is immutable, operation can't be performed: ";
 
     @Override
@@ -148,8 +472,8 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     @Override
-    public NavigableSet<E> descendingSet() {
-        return new ArraySet<>(new ReversibleArrayList<>(data, true), Collections.reverseOrder(comparator));
+    public ArraySet<E> descendingSet() {
+        return new ArraySet<>(this, from, to, !reversed);
     }
 
     @Override
@@ -158,7 +482,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     @Override
-    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+    public ArraySet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
         if (compare(fromElement, toElement) > 0) {
             throw new IllegalArgumentException(fromElement + " should be less than " + toElement + "!");
         }
@@ -166,7 +490,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     @Override
-    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+    public ArraySet<E> headSet(E toElement, boolean inclusive) {
         if (isEmpty()) {
             return this;
         } else {
@@ -175,7 +499,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     @Override
-    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+    public ArraySet<E> tailSet(E fromElement, boolean inclusive) {
         if (isEmpty()) {
             return this;
         } else {
@@ -184,17 +508,17 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     @Override
-    public SortedSet<E> subSet(E fromElement, E toElement) {
+    public ArraySet<E> subSet(E fromElement, E toElement) {
         return subSet(fromElement, true, toElement, false);
     }
 
     @Override
-    public SortedSet<E> headSet(E toElement) {
+    public ArraySet<E> headSet(E toElement) {
         return headSet(toElement, false);
     }
 
     @Override
-    public SortedSet<E> tailSet(E fromElement) {
+    public ArraySet<E> tailSet(E fromElement) {
         return tailSet(fromElement, true);
     }
 
@@ -210,7 +534,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         if (isEmpty()) {
             throw new NoSuchElementException(NO_SUCH_ELEMENT_MESSAGE + "first element.");
         } else {
-            return data.get(0);
+            return get(0);
         }
     }
 
@@ -219,7 +543,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         if (isEmpty()) {
             throw new NoSuchElementException(NO_SUCH_ELEMENT_MESSAGE + "last element.");
         } else {
-            return data.get(size() - 1);
+            return get(size() - 1);
         }
     }
 
@@ -248,21 +572,172 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE + "removeAll");
     }
 
-    private NavigableSet<E> subSetImplementation(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+    private ArraySet<E> subSetImplementation(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
         int fromIndex = getIndex(fromElement, fromInclusive, false);
         int toIndex = getIndex(toElement, toInclusive, true);
 
-        return fromIndex > toIndex ? new ArraySet<>(comparator) : new ArraySet<>(data.subList(fromIndex, toIndex + 1), comparator);
+        if (fromIndex > toIndex) {
+            return new ArraySet<>(this, from, from, reversed);
+        }
+        return reversed
+                ? new ArraySet<>(this, to - 1 - toIndex, to - fromIndex, true)
+                : new ArraySet<>(this, from + fromIndex, from + toIndex + 1, false);
     }
 
-    private ArraySet(ReversibleArrayList<E> reversibleArray, Comparator<? super E> comparator) {
-        this.data = reversibleArray;
-        this.comparator = comparator;
+    private enum Operation {
+        UNION, INTERSECTION, DIFFERENCE
+    }
+
+    // Runs are galloped over when one side is this many times larger than the other
+    private static final int GALLOP_RATIO = 8;
+    private static final int MIN_PARALLEL_PART = 1 << 14;
+
+    /**
+     * Returns elements of both sets. Of equal elements, the one from the first set is kept.
+     */
+    public static <E> ArraySet<E> union(ArraySet<E> first, ArraySet<E> second) {
+        return combine(Operation.UNION, first, second);
+    }
+
+    /**
+     * Returns elements of the first set that have equal elements in the second one.
+     */
+    public static <E> ArraySet<E> intersection(ArraySet<E> first, ArraySet<E> second) {
+        return combine(Operation.INTERSECTION, first, second);
+    }
+
+    /**
+     * Returns elements of the first set that have no equal elements in the second one.
+     */
+    public static <E> ArraySet<E> difference(ArraySet<E> first, ArraySet<E> second) {
+        return combine(Operation.DIFFERENCE, first, second);
+    }
+
+    /**
+     * Merges two sets in one pass. Big inputs are cut into parts at elements of the larger set,
+     * which are merged in parallel and concatenated.
+     */
+    private static <E> ArraySet<E> combine(Operation operation, ArraySet<E> first, ArraySet<E> second) {
+        if (!Objects.equals(first.comparator(), second.comparator())) {
+            throw new IllegalArgumentException("ArraySets should have the same comparator!");
+        }
+
+        int parts = Math.min(4 * ForkJoinPool.getCommonPoolParallelism(),
+                (first.size() + second.size()) / MIN_PARALLEL_PART);
+        if (parts <= 1) {
+            return new ArraySet<>(merge(operation, first, 0, first.size(), second, 0, second.size()),
+                    first.comparator());
+        }
+
+        boolean firstLarger = first.size() >= second.size();
+        ArraySet<E> larger = firstLarger ? first : second;
+        ArraySet<E> smaller = firstLarger ? second : first;
+
+        int[] largerBounds = new int[parts + 1];
+        int[] smallerBounds = new int[parts + 1];
+        for (int part = 1; part <= parts; part++) {
+            largerBounds[part] = (int) ((long) larger.size() * part / parts);
+            smallerBounds[part] = part == parts ? smaller.size()
+                    : smaller.getIndex(larger.get(largerBounds[part]), true, false);
+        }
+
+        int[] firstBounds = firstLarger ? largerBounds : smallerBounds;
+        int[] secondBounds = firstLarger ? smallerBounds : largerBounds;
+        Object[][] merged = IntStream.range(0, parts).parallel()
+                .mapToObj(part -> merge(operation, first, firstBounds[part], firstBounds[part + 1],
+                        second, secondBounds[part], secondBounds[part + 1]))
+                .toArray(Object[][]::new);
+
+        Object[] elements = new Object[Arrays.stream(merged).mapToInt(part -> part.length).sum()];
+        int size = 0;
+        for (Object[] part : merged) {
+            System.arraycopy(part, 0, elements, size, part.length);
+            size += part.length;
+        }
+        return new ArraySet<>(elements, first.comparator());
+    }
+
+    private static <E> Object[] merge(Operation operation, ArraySet<E> first, int i, int firstTo,
+                                      ArraySet<E> second, int j, int secondTo) {
+        int firstSize = firstTo - i;
+        int secondSize = secondTo - j;
+        boolean gallop = firstSize > GALLOP_RATIO * secondSize || secondSize > GALLOP_RATIO * firstSize;
+
+        Object[] result = new Object[operation == Operation.UNION ? firstSize + secondSize
+                : operation == Operation.INTERSECTION ? Math.min(firstSize, secondSize) : firstSize];
+        int size = 0;
+
+        while (i < firstTo && j < secondTo) {
+            int comparison = first.compare(first.get(i), second.get(j));
+            if (comparison < 0) {
+                int next = gallop ? first.gallop(i, firstTo, second.get(j)) : i + 1;
+                if (operation != Operation.INTERSECTION) {
+                    size = first.copy(i, next, result, size);
+                }
+                i = next;
+            } else if (comparison > 0) {
+                int next = gallop ? second.gallop(j, secondTo, first.get(i)) : j + 1;
+                if (operation == Operation.UNION) {
+                    size = second.copy(j, next, result, size);
+                }
+                j = next;
+            } else {
+                if (operation != Operation.DIFFERENCE) {
+                    result[size++] = first.get(i);
+                }
+                i++;
+                j++;
+            }
+        }
+
+        if (operation != Operation.INTERSECTION) {
+            size = first.copy(i, firstTo, result, size);
+        }
+        if (operation == Operation.UNION) {
+            size = second.copy(j, secondTo, result, size);
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Returns index of the first element in {@code [from, to)} that isn't less than the given one,
+     * knowing that the element at {@code from} is less. Probes at doubling distances, then searches binary.
+     */
+    private int gallop(int from, int to, E element) {
+        int low = from;
+        int step = 1;
+        while (from + step < to && compare(get(from + step), element) < 0) {
+            low = from + step;
+            step <<= 1;
+        }
+
+        int high = Math.min(from + step, to);
+        // The answer is in (low, high]
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (compare(get(middle), element) < 0) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return high;
+    }
+
+    private int copy(int from, int to, Object[] result, int size) {
+        if (!reversed) {
+            System.arraycopy(elements, this.from + from, result, size, to - from);
+            return size + to - from;
+        }
+        for (int i = from; i < to; i++) {
+            result[size++] = get(i);
+        }
+        return size;
     }
 
     @Override
     public int size() {
-        return data.size();
+        return to - from;
     }
 }
 
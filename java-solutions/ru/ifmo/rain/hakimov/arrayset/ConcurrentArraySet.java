@@ -0,0 +1,631 @@
+package ru.ifmo.rain.hakimov.arrayset;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Thread-safe {@link NavigableSet} for sets that are read much more often than they are changed.
+ * The contents are an immutable sorted {@link ArraySet} and small sorted deltas of added and removed elements,
+ * published together through an atomic reference: reads never lock, and writes replace the deltas
+ * with compare-and-set, merging them into a new {@code ArraySet} once they grow.
+ * <p>
+ * Views are live: they navigate and change the current contents of the set. Iterators and spliterators,
+ * including those of views, work over an immutable snapshot of the set taken when they are created.
+ */
+public class ConcurrentArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+    private static final int DEFAULT_MERGE_THRESHOLD = 64;
+
+    private static class State<E> {
+        // Elements of added aren't in base, elements of removed are
+        final ArraySet<E> base;
+        final ArraySet<E> added;
+        final ArraySet<E> removed;
+
+        State(ArraySet<E> base, ArraySet<E> added, ArraySet<E> removed) {
+            this.base = base;
+            this.added = added;
+            this.removed = removed;
+        }
+
+        int deltaSize() {
+            return added.size() + removed.size();
+        }
+
+        boolean contains(Object o) {
+            return added.contains(o) || base.contains(o) && !removed.contains(o);
+        }
+    }
+
+    private final AtomicReference<State<E>> state;
+    private final Comparator<? super E> comparator;
+    private final int mergeThreshold;
+    private final ArraySet<E> empty;
+
+    public ConcurrentArraySet() {
+        this(Collections.emptyList(), null);
+    }
+
+    public ConcurrentArraySet(Comparator<? super E> comparator) {
+        this(Collections.emptyList(), comparator);
+    }
+
+    public ConcurrentArraySet(Collection<? extends E> collection) {
+        this(collection, null);
+    }
+
+    public ConcurrentArraySet(Collection<? extends E> collection, Comparator<? super E> comparator) {
+        this(collection, comparator, DEFAULT_MERGE_THRESHOLD);
+    }
+
+    /**
+     * Creates a set that merges its deltas into a new sorted array when they hold more than
+     * {@code mergeThreshold} elements, or more than square root of the set size, if it is greater.
+     */
+    public ConcurrentArraySet(Collection<? extends E> collection, Comparator<? super E> comparator, int mergeThreshold) {
+        if (mergeThreshold <= 0) {
+            throw new IllegalArgumentException("Merge threshold should be positive!");
+        }
+        this.comparator = comparator;
+        this.mergeThreshold = mergeThreshold;
+        this.empty = new ArraySet<>(new Object[0], comparator);
+        this.state = new AtomicReference<>(new State<>(new ArraySet<>(collection, comparator), empty, empty));
+    }
+
+    private ArraySet<E> singleton(E element) {
+        return new ArraySet<>(new Object[]{element}, comparator);
+    }
+
+    private static <E> ArraySet<E> merge(State<E> state) {
+        return state.deltaSize() == 0 ? state.base
+                : ArraySet.union(ArraySet.difference(state.base, state.removed), state.added);
+    }
+
+    private State<E> normalize(ArraySet<E> base, ArraySet<E> added, ArraySet<E> removed) {
+        State<E> result = new State<>(base, added, removed);
+        if (result.deltaSize() > Math.max(mergeThreshold, (int) Math.sqrt(base.size()))) {
+            return new State<>(merge(result), empty, empty);
+        }
+        return result;
+    }
+
+    /**
+     * Returns an immutable snapshot of the set. Pending deltas are merged, and the merged state is published
+     * unless the set has been changed in the meantime.
+     */
+    public ArraySet<E> snapshot() {
+        State<E> current = state.get();
+        if (current.deltaSize() == 0) {
+            return current.base;
+        }
+        ArraySet<E> merged = merge(current);
+        state.compareAndSet(current, new State<>(merged, empty, empty));
+        return merged;
+    }
+
+    @Override
+    public boolean add(E element) {
+        Objects.requireNonNull(element, "ConcurrentArraySet can't contain null elements");
+        while (true) {
+            State<E> current = state.get();
+            State<E> next;
+            if (current.removed.contains(element)) {
+                next = normalize(current.base, current.added, ArraySet.difference(current.removed, singleton(element)));
+            } else if (current.base.contains(element) || current.added.contains(element)) {
+                return false;
+            } else {
+                next = normalize(current.base, ArraySet.union(current.added, singleton(element)), current.removed);
+            }
+            if (state.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean remove(Object o) {
+        E element = (E) Objects.requireNonNull(o);
+        while (true) {
+            State<E> current = state.get();
+            State<E> next;
+            if (current.added.contains(element)) {
+                next = normalize(current.base, ArraySet.difference(current.added, singleton(element)), current.removed);
+            } else if (current.base.contains(element) && !current.removed.contains(element)) {
+                next = normalize(current.base, current.added, ArraySet.union(current.removed, singleton(element)));
+            } else {
+                return false;
+            }
+            if (state.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Adds all elements of the collection in a single merge.
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> collection) {
+        ArraySet<E> elements = new ArraySet<>(collection, comparator);
+        while (true) {
+            State<E> current = state.get();
+            ArraySet<E> merged = merge(current);
+            ArraySet<E> next = ArraySet.union(merged, elements);
+            if (state.compareAndSet(current, new State<>(next, empty, empty))) {
+                return next.size() != merged.size();
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        state.set(new State<>(empty, empty, empty));
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return state.get().contains(o);
+    }
+
+    @Override
+    public int size() {
+        State<E> current = state.get();
+        return current.base.size() - current.removed.size() + current.added.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the first element of {@code base}, starting from {@code candidate} and moving with {@code next},
+     * that isn't removed, or the element of {@code added}, whichever is greater (or less, if not {@code greatest}).
+     */
+    private E choose(State<E> current, E candidate, UnaryOperator<E> next, E added, boolean greatest) {
+        while (candidate != null && current.removed.contains(candidate)) {
+            candidate = next.apply(candidate);
+        }
+        if (candidate == null || added == null) {
+            return candidate == null ? added : candidate;
+        }
+        return (compare(candidate, added) > 0) == greatest ? candidate : added;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E e1, E e2) {
+        return (comparator == null) ? ((Comparable<E>) e1).compareTo(e2) : comparator.compare(e1, e2);
+    }
+
+    @Override
+    public E lower(E element) {
+        State<E> current = state.get();
+        return choose(current, current.base.lower(element), current.base::lower, current.added.lower(element), true);
+    }
+
+    @Override
+    public E floor(E element) {
+        State<E> current = state.get();
+        return choose(current, current.base.floor(element), current.base::lower, current.added.floor(element), true);
+    }
+
+    @Override
+    public E ceiling(E element) {
+        State<E> current = state.get();
+        return choose(current, current.base.ceiling(element), current.base::higher, current.added.ceiling(element), false);
+    }
+
+    @Override
+    public E higher(E element) {
+        State<E> current = state.get();
+        return choose(current, current.base.higher(element), current.base::higher, current.added.higher(element), false);
+    }
+
+    private E firstOrNull(State<E> current) {
+        return choose(current, current.base.isEmpty() ? null : current.base.first(), current.base::higher,
+                current.added.isEmpty() ? null : current.added.first(), false);
+    }
+
+    private E lastOrNull(State<E> current) {
+        return choose(current, current.base.isEmpty() ? null : current.base.last(), current.base::lower,
+                current.added.isEmpty() ? null : current.added.last(), true);
+    }
+
+    private static final String NO_SUCH_ELEMENT_MESSAGE = "ConcurrentArraySet is empty! Can't get ";
+
+    @Override
+    public E first() {
+        E element = firstOrNull(state.get());
+        if (element == null) {
+            throw new NoSuchElementException(NO_SUCH_ELEMENT_MESSAGE + "first element.");
+        }
+        return element;
+    }
+
+    @Override
+    public E last() {
+        E element = lastOrNull(state.get());
+        if (element == null) {
+            throw new NoSuchElementException(NO_SUCH_ELEMENT_MESSAGE + "last element.");
+        }
+        return element;
+    }
+
+    @Override
+    public E pollFirst() {
+        while (true) {
+            E element = firstOrNull(state.get());
+            if (element == null || remove(element)) {
+                return element;
+            }
+        }
+    }
+
+    @Override
+    public E pollLast() {
+        while (true) {
+            E element = lastOrNull(state.get());
+            if (element == null || remove(element)) {
+                return element;
+            }
+        }
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the set. Its {@code remove} removes the element from this set.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new SnapshotIterator(snapshot().iterator());
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new SnapshotIterator(snapshot().descendingIterator());
+    }
+
+    private class SnapshotIterator implements Iterator<E> {
+        private final Iterator<E> iterator;
+        private E last;
+
+        SnapshotIterator(Iterator<E> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public E next() {
+            return last = iterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            ConcurrentArraySet.this.remove(last);
+            last = null;
+        }
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return snapshot().spliterator();
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new RangeView(null, false, null, false, true);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (compare(Objects.requireNonNull(fromElement), Objects.requireNonNull(toElement)) > 0) {
+            throw new IllegalArgumentException(fromElement + " should be less than " + toElement + "!");
+        }
+        return new RangeView(fromElement, fromInclusive, toElement, toInclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return new RangeView(null, false, Objects.requireNonNull(toElement), inclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return new RangeView(Objects.requireNonNull(fromElement), inclusive, null, false, false);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    /**
+     * Live view of the elements between the bounds ({@code null} bound is unbounded), in reversed order
+     * if {@code descending}. Navigation and changes go to the current state of the set,
+     * iteration and size work over a snapshot of the range.
+     */
+    private class RangeView extends AbstractSet<E> implements NavigableSet<E> {
+        // Bounds are in the order of the set, regardless of descending
+        private final E low;
+        private final boolean lowInclusive;
+        private final E high;
+        private final boolean highInclusive;
+        private final boolean descending;
+
+        RangeView(E low, boolean lowInclusive, E high, boolean highInclusive, boolean descending) {
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            this.high = high;
+            this.highInclusive = highInclusive;
+            this.descending = descending;
+        }
+
+        private boolean tooLow(E element) {
+            if (low == null) {
+                return false;
+            }
+            int c = compare(element, low);
+            return c < 0 || c == 0 && !lowInclusive;
+        }
+
+        private boolean tooHigh(E element) {
+            if (high == null) {
+                return false;
+            }
+            int c = compare(element, high);
+            return c > 0 || c == 0 && !highInclusive;
+        }
+
+        private boolean inRange(E element) {
+            return !tooLow(element) && !tooHigh(element);
+        }
+
+        /**
+         * Checks a bound of a nested view: an exclusive bound may be equal to an exclusive bound of this view.
+         */
+        private boolean inRange(E element, boolean inclusive) {
+            return inclusive ? inRange(element)
+                    : (low == null || compare(element, low) >= 0) && (high == null || compare(element, high) <= 0);
+        }
+
+        private E inRangeOrNull(E element) {
+            return element == null || !inRange(element) ? null : element;
+        }
+
+        private E lowest() {
+            if (low == null) {
+                return inRangeOrNull(ConcurrentArraySet.this.firstOrNull(state.get()));
+            }
+            return inRangeOrNull(lowInclusive
+                    ? ConcurrentArraySet.this.ceiling(low) : ConcurrentArraySet.this.higher(low));
+        }
+
+        private E highest() {
+            if (high == null) {
+                return inRangeOrNull(ConcurrentArraySet.this.lastOrNull(state.get()));
+            }
+            return inRangeOrNull(highInclusive
+                    ? ConcurrentArraySet.this.floor(high) : ConcurrentArraySet.this.lower(high));
+        }
+
+        private E lowerAscending(E element, boolean inclusive) {
+            if (tooHigh(element)) {
+                return highest();
+            }
+            return inRangeOrNull(inclusive
+                    ? ConcurrentArraySet.this.floor(element) : ConcurrentArraySet.this.lower(element));
+        }
+
+        private E higherAscending(E element, boolean inclusive) {
+            if (tooLow(element)) {
+                return lowest();
+            }
+            return inRangeOrNull(inclusive
+                    ? ConcurrentArraySet.this.ceiling(element) : ConcurrentArraySet.this.higher(element));
+        }
+
+        @Override
+        public E lower(E element) {
+            return descending ? higherAscending(element, false) : lowerAscending(element, false);
+        }
+
+        @Override
+        public E floor(E element) {
+            return descending ? higherAscending(element, true) : lowerAscending(element, true);
+        }
+
+        @Override
+        public E ceiling(E element) {
+            return descending ? lowerAscending(element, true) : higherAscending(element, true);
+        }
+
+        @Override
+        public E higher(E element) {
+            return descending ? lowerAscending(element, false) : higherAscending(element, false);
+        }
+
+        private E firstOrNull() {
+            return descending ? highest() : lowest();
+        }
+
+        private E lastOrNull() {
+            return descending ? lowest() : highest();
+        }
+
+        @Override
+        public E first() {
+            E element = firstOrNull();
+            if (element == null) {
+                throw new NoSuchElementException(NO_SUCH_ELEMENT_MESSAGE + "first element.");
+            }
+            return element;
+        }
+
+        @Override
+        public E last() {
+            E element = lastOrNull();
+            if (element == null) {
+                throw new NoSuchElementException(NO_SUCH_ELEMENT_MESSAGE + "last element.");
+            }
+            return element;
+        }
+
+        @Override
+        public E pollFirst() {
+            while (true) {
+                E element = firstOrNull();
+                if (element == null || ConcurrentArraySet.this.remove(element)) {
+                    return element;
+                }
+            }
+        }
+
+        @Override
+        public E pollLast() {
+            while (true) {
+                E element = lastOrNull();
+                if (element == null || ConcurrentArraySet.this.remove(element)) {
+                    return element;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean contains(Object o) {
+            return inRange((E) Objects.requireNonNull(o)) && ConcurrentArraySet.this.contains(o);
+        }
+
+        @Override
+        public boolean add(E element) {
+            if (!inRange(Objects.requireNonNull(element))) {
+                throw new IllegalArgumentException(element + " is out of the range of the view!");
+            }
+            return ConcurrentArraySet.this.add(element);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean remove(Object o) {
+            return inRange((E) Objects.requireNonNull(o)) && ConcurrentArraySet.this.remove(o);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return lowest() == null;
+        }
+
+        private NavigableSet<E> snapshotView() {
+            NavigableSet<E> view = snapshot();
+            if (low != null) {
+                view = view.tailSet(low, lowInclusive);
+            }
+            if (high != null) {
+                view = view.headSet(high, highInclusive);
+            }
+            return descending ? view.descendingSet() : view;
+        }
+
+        @Override
+        public int size() {
+            return snapshotView().size();
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new SnapshotIterator(snapshotView().iterator());
+        }
+
+        @Override
+        public Iterator<E> descendingIterator() {
+            return new SnapshotIterator(snapshotView().descendingIterator());
+        }
+
+        @Override
+        public Spliterator<E> spliterator() {
+            return snapshotView().spliterator();
+        }
+
+        /**
+         * Creates a nested view with the given bounds in the order of the set,
+         * {@code null} keeps the bound of this view.
+         */
+        private NavigableSet<E> range(E from, boolean fromInclusive, E to, boolean toInclusive) {
+            if (from != null && !inRange(from, fromInclusive) || to != null && !inRange(to, toInclusive)) {
+                throw new IllegalArgumentException("Bounds are out of the range of the view!");
+            }
+            return new RangeView(from == null ? low : from, from == null ? lowInclusive : fromInclusive,
+                    to == null ? high : to, to == null ? highInclusive : toInclusive, descending);
+        }
+
+        @Override
+        public NavigableSet<E> descendingSet() {
+            return new RangeView(low, lowInclusive, high, highInclusive, !descending);
+        }
+
+        @Override
+        public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+            int c = compare(Objects.requireNonNull(fromElement), Objects.requireNonNull(toElement));
+            if (descending ? c < 0 : c > 0) {
+                throw new IllegalArgumentException(fromElement + " should be less than " + toElement + "!");
+            }
+            return descending ? range(toElement, toInclusive, fromElement, fromInclusive)
+                    : range(fromElement, fromInclusive, toElement, toInclusive);
+        }
+
+        @Override
+        public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+            Objects.requireNonNull(toElement);
+            return descending ? range(toElement, inclusive, null, false) : range(null, false, toElement, inclusive);
+        }
+
+        @Override
+        public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+            Objects.requireNonNull(fromElement);
+            return descending ? range(null, false, fromElement, inclusive) : range(fromElement, inclusive, null, false);
+        }
+
+        @Override
+        public NavigableSet<E> subSet(E fromElement, E toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public NavigableSet<E> headSet(E toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public NavigableSet<E> tailSet(E fromElement) {
+            return tailSet(fromElement, true);
+        }
+
+        @Override
+        public Comparator<? super E> comparator() {
+            return descending ? Collections.reverseOrder(ConcurrentArraySet.this.comparator)
+                    : ConcurrentArraySet.this.comparator;
+        }
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+}
@@ -0,0 +1,210 @@
+package ru.ifmo.rain.hakimov.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable {@link NavigableSet} of {@code int} values in natural order, backed by a sorted {@code int[]}.
+ * Besides the boxed {@code NavigableSet} methods, it provides allocation-free overloads that take primitives.
+ * Views share the array of the set they were created from.
+ */
+public class IntArraySet extends AbstractPrimitiveArraySet<Integer, IntArraySet> {
+    private final int[] elements;
+
+    public IntArraySet() {
+        this(new int[0], 0, 0, false);
+    }
+
+    public IntArraySet(int... elements) {
+        this(sortedUnique(elements.clone()), false);
+    }
+
+    public IntArraySet(Collection<Integer> collection) {
+        this(sortedUnique(collection.stream().mapToInt(Integer::intValue).toArray()), false);
+    }
+
+    private IntArraySet(int[] elements, boolean reversed) {
+        this(elements, 0, elements.length, reversed);
+    }
+
+    private IntArraySet(int[] elements, int from, int to, boolean reversed) {
+        super(from, to, reversed);
+        this.elements = elements;
+    }
+
+    private static int[] sortedUnique(int[] elements) {
+        Arrays.sort(elements);
+
+        int size = 0;
+        for (int i = 0; i < elements.length; i++) {
+            if (i == 0 || elements[i] != elements[size - 1]) {
+                elements[size++] = elements[i];
+            }
+        }
+        return size == elements.length ? elements : Arrays.copyOf(elements, size);
+    }
+
+    @Override
+    long get(int index) {
+        return elements[index];
+    }
+
+    @Override
+    IntArraySet view(int from, int to, boolean reversed) {
+        return new IntArraySet(elements, from, to, reversed);
+    }
+
+    // Searched elements always come from int arguments
+    @Override
+    int binarySearch(int from, int to, long element) {
+        return Arrays.binarySearch(elements, from, to, (int) element);
+    }
+
+    @Override
+    Integer box(long element) {
+        return (int) element;
+    }
+
+    @Override
+    long unbox(Object element) {
+        return (Integer) element;
+    }
+
+    @Override
+    int hash(long element) {
+        return Integer.hashCode((int) element);
+    }
+
+    public boolean contains(int element) {
+        return indexOf(element) >= 0;
+    }
+
+    /**
+     * Returns the greatest element less than the given one, or {@code absent} if there is no such element.
+     */
+    public int lower(int element, int absent) {
+        return (int) navigate(element, false, true, absent);
+    }
+
+    /**
+     * Returns the greatest element less than or equal to the given one, or {@code absent} if there is no such element.
+     */
+    public int floor(int element, int absent) {
+        return (int) navigate(element, true, true, absent);
+    }
+
+    /**
+     * Returns the least element greater than or equal to the given one, or {@code absent} if there is no such element.
+     */
+    public int ceiling(int element, int absent) {
+        return (int) navigate(element, true, false, absent);
+    }
+
+    /**
+     * Returns the least element greater than the given one, or {@code absent} if there is no such element.
+     */
+    public int higher(int element, int absent) {
+        return (int) navigate(element, false, false, absent);
+    }
+
+    /**
+     * Answers {@link #lower(int, int)} for every probe, writing the answers to the same indices of {@code results}.
+     * Each search starts from the answer to the previous probe, so sorted probes are answered in a single galloping pass.
+     */
+    public void lower(int[] probes, int absent, int[] results) {
+        navigate(probes, absent, results, false, true);
+    }
+
+    /**
+     * Answers {@link #floor(int, int)} for every probe, see {@link #lower(int[], int, int[])}.
+     */
+    public void floor(int[] probes, int absent, int[] results) {
+        navigate(probes, absent, results, true, true);
+    }
+
+    /**
+     * Answers {@link #ceiling(int, int)} for every probe, see {@link #lower(int[], int, int[])}.
+     */
+    public void ceiling(int[] probes, int absent, int[] results) {
+        navigate(probes, absent, results, true, false);
+    }
+
+    /**
+     * Answers {@link #higher(int, int)} for every probe, see {@link #lower(int[], int, int[])}.
+     */
+    public void higher(int[] probes, int absent, int[] results) {
+        navigate(probes, absent, results, false, false);
+    }
+
+    /**
+     * Answers {@link #contains(int)} for every probe, see {@link #lower(int[], int, int[])}.
+     */
+    public void contains(int[] probes, boolean[] results) {
+        ArraySet.checkResults(probes.length, results.length);
+
+        int bound = firstBound();
+        for (int i = 0; i < probes.length; i++) {
+            bound = lowerBound(probes[i], bound);
+            results[i] = isAt(bound, probes[i]);
+        }
+    }
+
+    private void navigate(int[] probes, int absent, int[] results, boolean inclusive, boolean lower) {
+        ArraySet.checkResults(probes.length, results.length);
+
+        int bound = firstBound();
+        for (int i = 0; i < probes.length; i++) {
+            bound = lowerBound(probes[i], bound);
+            int index = answer(probes[i], bound, inclusive, lower);
+            results[i] = index >= 0 ? elements[index] : absent;
+        }
+    }
+
+    public int firstInt() {
+        return (int) firstValue();
+    }
+
+    public int lastInt() {
+        return (int) lastValue();
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new IntIterator(false);
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt descendingIterator() {
+        return new IntIterator(true);
+    }
+
+    private class IntIterator extends Cursor implements PrimitiveIterator.OfInt {
+        IntIterator(boolean descending) {
+            super(descending);
+        }
+
+        @Override
+        public int nextInt() {
+            return (int) nextValue();
+        }
+    }
+
+    public IntArraySet subSet(int fromElement, boolean fromInclusive, int toElement, boolean toInclusive) {
+        return subSetOf(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    public IntArraySet headSet(int toElement, boolean inclusive) {
+        return headSetOf(toElement, inclusive);
+    }
+
+    public IntArraySet tailSet(int fromElement, boolean inclusive) {
+        return tailSetOf(fromElement, inclusive);
+    }
+
+    public int[] toIntArray() {
+        int[] result = new int[size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (int) getLong(i);
+        }
+        return result;
+    }
+}
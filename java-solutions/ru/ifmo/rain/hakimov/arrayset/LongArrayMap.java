@@ -0,0 +1,355 @@
+package ru.ifmo.rain.hakimov.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable {@link NavigableMap} with {@code long} keys in natural order over a sorted {@code long[]} of keys
+ * and a parallel array of values. Keys are a {@link LongArraySet}, so views cost nothing to create,
+ * and lookups by primitive keys don't allocate.
+ */
+public class LongArrayMap<V> extends AbstractMap<Long, V> implements NavigableMap<Long, V> {
+    private final LongArraySet keys;
+    private final Object[] values;
+
+    @SuppressWarnings("unchecked")
+    public LongArrayMap() {
+        this(new long[0], (V[]) new Object[0]);
+    }
+
+    public LongArrayMap(Map<Long, ? extends V> map) {
+        this(map.entrySet().toArray(new Entry<?, ?>[0]));
+    }
+
+    private LongArrayMap(Entry<?, ?>[] entries) {
+        this(entries, new Object[entries.length]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private LongArrayMap(Entry<?, ?>[] entries, Object[] values) {
+        this(keys(entries, values), (V[]) values);
+    }
+
+    /**
+     * Returns keys of the entries and puts their values into {@code values}, reading every entry once,
+     * so keys and values stay paired even if the source map is changed concurrently.
+     */
+    private static long[] keys(Entry<?, ?>[] entries, Object[] values) {
+        long[] keys = new long[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            keys[i] = (Long) entries[i].getKey();
+            values[i] = entries[i].getValue();
+        }
+        return keys;
+    }
+
+    /**
+     * Creates a map from keys and values at the same indices. For repeated keys the last value is kept.
+     */
+    public LongArrayMap(long[] keys, V[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Number of keys " + keys.length + " and values " + values.length
+                    + " should be equal!");
+        }
+
+        long[] sortedKeys = keys.clone();
+        Object[] sortedValues = Arrays.copyOf(values, values.length, Object[].class);
+        for (int i = 1; i < keys.length; i++) {
+            if (keys[i - 1] > keys[i]) {
+                // Stable sort of indices keeps the last of equal keys last
+                Integer[] order = new Integer[keys.length];
+                Arrays.setAll(order, index -> index);
+                Arrays.parallelSort(order, Comparator.comparingLong(index -> keys[index]));
+                for (int j = 0; j < order.length; j++) {
+                    sortedKeys[j] = keys[order[j]];
+                    sortedValues[j] = values[order[j]];
+                }
+                break;
+            }
+        }
+
+        int size = 0;
+        for (int i = 0; i < sortedKeys.length; i++) {
+            if (size == 0 || sortedKeys[size - 1] != sortedKeys[i]) {
+                sortedKeys[size++] = sortedKeys[i];
+            }
+            sortedValues[size - 1] = sortedValues[i];
+        }
+
+        this.keys = new LongArraySet(size == keys.length ? sortedKeys : Arrays.copyOf(sortedKeys, size), false);
+        this.values = size == values.length ? sortedValues : Arrays.copyOf(sortedValues, size);
+    }
+
+    private LongArrayMap(LongArraySet keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int index) {
+        return (V) values[keys.baseIndex(index)];
+    }
+
+    private Entry<Long, V> entry(int index) {
+        return 0 <= index && index < size() ? new SimpleImmutableEntry<>(keys.getLong(index), value(index)) : null;
+    }
+
+    @Override
+    public int size() {
+        return keys.size();
+    }
+
+    public V get(long key) {
+        int index = keys.indexOf(key);
+        return index >= 0 ? value(index) : null;
+    }
+
+    public V getOrDefault(long key, V defaultValue) {
+        int index = keys.indexOf(key);
+        return index >= 0 ? value(index) : defaultValue;
+    }
+
+    public boolean containsKey(long key) {
+        return keys.contains(key);
+    }
+
+    /**
+     * Returns the greatest key less than the given one, or {@code absent} if there is no such key.
+     */
+    public long lowerKey(long key, long absent) {
+        return keys.lower(key, absent);
+    }
+
+    /**
+     * Returns the greatest key less than or equal to the given one, or {@code absent} if there is no such key.
+     */
+    public long floorKey(long key, long absent) {
+        return keys.floor(key, absent);
+    }
+
+    /**
+     * Returns the least key greater than or equal to the given one, or {@code absent} if there is no such key.
+     */
+    public long ceilingKey(long key, long absent) {
+        return keys.ceiling(key, absent);
+    }
+
+    /**
+     * Returns the least key greater than the given one, or {@code absent} if there is no such key.
+     */
+    public long higherKey(long key, long absent) {
+        return keys.higher(key, absent);
+    }
+
+    @Override
+    public V get(Object key) {
+        return get((long) (Long) key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return keys.contains(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (int i = 0; i < size(); i++) {
+            if (Objects.equals(value(i), value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Entry<Long, V> lowerEntry(Long key) {
+        return entry(keys.getIndex(key, false, true));
+    }
+
+    @Override
+    public Long lowerKey(Long key) {
+        return keys.lower(key);
+    }
+
+    @Override
+    public Entry<Long, V> floorEntry(Long key) {
+        return entry(keys.getIndex(key, true, true));
+    }
+
+    @Override
+    public Long floorKey(Long key) {
+        return keys.floor(key);
+    }
+
+    @Override
+    public Entry<Long, V> ceilingEntry(Long key) {
+        return entry(keys.getIndex(key, true, false));
+    }
+
+    @Override
+    public Long ceilingKey(Long key) {
+        return keys.ceiling(key);
+    }
+
+    @Override
+    public Entry<Long, V> higherEntry(Long key) {
+        return entry(keys.getIndex(key, false, false));
+    }
+
+    @Override
+    public Long higherKey(Long key) {
+        return keys.higher(key);
+    }
+
+    @Override
+    public Entry<Long, V> firstEntry() {
+        return entry(0);
+    }
+
+    @Override
+    public Entry<Long, V> lastEntry() {
+        return entry(size() - 1);
+    }
+
+    @Override
+    public Long firstKey() {
+        return keys.first();
+    }
+
+    @Override
+    public Long lastKey() {
+        return keys.last();
+    }
+
+    @Override
+    public LongArrayMap<V> descendingMap() {
+        return new LongArrayMap<>(keys.descendingSet(), values);
+    }
+
+    @Override
+    public LongArraySet keySet() {
+        return keys;
+    }
+
+    @Override
+    public LongArraySet navigableKeySet() {
+        return keys;
+    }
+
+    @Override
+    public LongArraySet descendingKeySet() {
+        return keys.descendingSet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractList<>() {
+            @Override
+            public V get(int index) {
+                Objects.checkIndex(index, size());
+                return value(index);
+            }
+
+            @Override
+            public int size() {
+                return LongArrayMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<Long, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Long, V>> iterator() {
+                return new Iterator<>() {
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < size();
+                    }
+
+                    @Override
+                    public Entry<Long, V> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return entry(index++);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return LongArrayMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public LongArrayMap<V> subMap(Long fromKey, boolean fromInclusive, Long toKey, boolean toInclusive) {
+        return new LongArrayMap<>(keys.subSet(fromKey, fromInclusive, toKey, toInclusive), values);
+    }
+
+    @Override
+    public LongArrayMap<V> headMap(Long toKey, boolean inclusive) {
+        return new LongArrayMap<>(keys.headSet(toKey, inclusive), values);
+    }
+
+    @Override
+    public LongArrayMap<V> tailMap(Long fromKey, boolean inclusive) {
+        return new LongArrayMap<>(keys.tailSet(fromKey, inclusive), values);
+    }
+
+    @Override
+    public LongArrayMap<V> subMap(Long fromKey, Long toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public LongArrayMap<V> headMap(Long toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public LongArrayMap<V> tailMap(Long fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    @Override
+    public Comparator<? super Long> comparator() {
+        return keys.comparator();
+    }
+
+    private static final String UNSUPPORTED_OPERATION_MESSAGE = "LongArrayMap is immutable, operation can't be performed: ";
+
+    @Override
+    public Entry<Long, V> pollFirstEntry() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE + "pollFirstEntry");
+    }
+
+    @Override
+    public Entry<Long, V> pollLastEntry() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE + "pollLastEntry");
+    }
+
+    @Override
+    public V put(Long key, V value) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE + "put");
+    }
+
+    @Override
+    public void putAll(Map<? extends Long, ? extends V> map) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE + "putAll");
+    }
+
+    @Override
+    public V remove(Object key) {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE + "remove");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException(UNSUPPORTED_OPERATION_MESSAGE + "clear");
+    }
+}
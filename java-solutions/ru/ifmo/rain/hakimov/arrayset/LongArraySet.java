@@ -0,0 +1,63 @@
+package ru.ifmo.rain.hakimov.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable {@link NavigableSet} of {@code long} values in natural order, backed by a sorted {@code long[]}.
+ * Besides the boxed {@code NavigableSet} methods, it provides allocation-free overloads that take primitives.
+ * Views share the array of the set they were created from.
+ */
+public class LongArraySet extends AbstractLongArraySet<LongArraySet> {
+    private final long[] elements;
+
+    public LongArraySet() {
+        this(new long[0], 0, 0, false);
+    }
+
+    public LongArraySet(long... elements) {
+        this(sortedUnique(elements.clone()), false);
+    }
+
+    public LongArraySet(Collection<Long> collection) {
+        this(sortedUnique(collection.stream().mapToLong(Long::longValue).toArray()), false);
+    }
+
+    /**
+     * Creates a set over elements that are sorted and distinct, without copying them.
+     */
+    LongArraySet(long[] elements, boolean reversed) {
+        this(elements, 0, elements.length, reversed);
+    }
+
+    private LongArraySet(long[] elements, int from, int to, boolean reversed) {
+        super(from, to, reversed);
+        this.elements = elements;
+    }
+
+    private static long[] sortedUnique(long[] elements) {
+        Arrays.sort(elements);
+
+        int size = 0;
+        for (int i = 0; i < elements.length; i++) {
+            if (i == 0 || elements[i] != elements[size - 1]) {
+                elements[size++] = elements[i];
+            }
+        }
+        return size == elements.length ? elements : Arrays.copyOf(elements, size);
+    }
+
+    @Override
+    long get(int index) {
+        return elements[index];
+    }
+
+    @Override
+    LongArraySet view(int from, int to, boolean reversed) {
+        return new LongArraySet(elements, from, to, reversed);
+    }
+
+    @Override
+    int binarySearch(int from, int to, long element) {
+        return Arrays.binarySearch(elements, from, to, element);
+    }
+}
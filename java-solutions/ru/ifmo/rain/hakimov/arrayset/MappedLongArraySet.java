@@ -0,0 +1,100 @@
+package ru.ifmo.rain.hakimov.arrayset;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Immutable {@link NavigableSet} of {@code long} values in natural order, stored in a memory-mapped file.
+ * Opening a set maps the file and reads nothing but the header, and processes that open the same file share
+ * its pages through the page cache. Navigation and views behave exactly as in {@link LongArraySet}.
+ * <p>
+ * File layout: a 16-byte header ({@code magic, version, count}) followed by the sorted distinct values.
+ * All numbers are big-endian.
+ */
+public class MappedLongArraySet extends AbstractLongArraySet<MappedLongArraySet> {
+    private static final int MAGIC = 0x4C534554;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    // A single mapping can't exceed 2 GiB, so the values are mapped in chunks of 2^27 values (1 GiB)
+    private static final int CHUNK_BITS = 27;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private final LongBuffer[] chunks;
+
+    private MappedLongArraySet(LongBuffer[] chunks, int from, int to, boolean reversed) {
+        super(from, to, reversed);
+        this.chunks = chunks;
+    }
+
+    /**
+     * Maps the set written by {@link #write(Path, LongArraySet)}.
+     */
+    public static MappedLongArraySet open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Not a long set file: " + file);
+            }
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            long count = header.getLong(8);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not a long set file: " + file);
+            }
+            if (count < 0 || count > Integer.MAX_VALUE || HEADER_SIZE + count * Long.BYTES != fileSize) {
+                throw new IOException("Corrupted long set file: " + file);
+            }
+
+            int size = (int) count;
+            LongBuffer[] chunks = new LongBuffer[(size + CHUNK_MASK) >>> CHUNK_BITS];
+            for (int i = 0; i < chunks.length; i++) {
+                long first = (long) i << CHUNK_BITS;
+                long length = Math.min(CHUNK_MASK + 1, size - first);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * Long.BYTES,
+                        length * Long.BYTES).asLongBuffer();
+            }
+            // The mappings stay valid after the channel is closed
+            return new MappedLongArraySet(chunks, 0, size, false);
+        }
+    }
+
+    public static void write(Path file, long... elements) throws IOException {
+        write(file, new LongArraySet(elements));
+    }
+
+    /**
+     * Writes the elements of the set in ascending order, whatever order the set has.
+     */
+    public static void write(Path file, LongArraySet set) throws IOException {
+        long[] elements = (set.comparator() == null ? set : set.descendingSet()).toLongArray();
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(
+                FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE)), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(elements.length);
+            for (long element : elements) {
+                output.writeLong(element);
+            }
+        }
+    }
+
+    @Override
+    long get(int index) {
+        return chunks[index >>> CHUNK_BITS].get(index & CHUNK_MASK);
+    }
+
+    @Override
+    MappedLongArraySet view(int from, int to, boolean reversed) {
+        return new MappedLongArraySet(chunks, from, to, reversed);
+    }
+}
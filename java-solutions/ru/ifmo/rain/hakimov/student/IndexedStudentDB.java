@@ -0,0 +1,66 @@
+package ru.ifmo.rain.hakimov.student;
+
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * {@link StudentDB} with indexes of a roster built once: students by first name, last name and group,
+ * each list already sorted by name. Queries on the roster itself (the same instance, which shouldn't be changed
+ * after the indexes are built) take time proportional to the result size, other queries are answered as usual.
+ */
+@SuppressWarnings("unused")
+public class IndexedStudentDB extends StudentDB {
+    private final Collection<Student> roster;
+    private final Map<String, List<Student>> byFirstName;
+    private final Map<String, List<Student>> byLastName;
+    private final Map<String, List<Student>> byGroup;
+    private final Map<String, Map<String, String>> namesByGroup;
+
+    public IndexedStudentDB(Collection<Student> roster) {
+        this.roster = roster;
+
+        List<Student> sorted = sortStudentsByName(roster);
+        byFirstName = index(sorted, Student::getFirstName);
+        byLastName = index(sorted, Student::getLastName);
+        byGroup = index(sorted, Student::getGroup);
+        namesByGroup = byGroup.entrySet()
+                .stream()
+                .collect(Collectors.toMap(Map.Entry::getKey,
+                        entry -> super.findStudentNamesByGroup(entry.getValue(), entry.getKey())));
+    }
+
+    private static Map<String, List<Student>> index(List<Student> sorted, Function<Student, String> key) {
+        return sorted
+                .stream()
+                .collect(Collectors.groupingBy(key));
+    }
+
+    private static List<Student> find(Map<String, List<Student>> index, String value) {
+        return new ArrayList<>(index.getOrDefault(value, Collections.emptyList()));
+    }
+
+    @Override
+    public List<Student> findStudentsByFirstName(Collection<Student> students, String firstName) {
+        return students == roster ? find(byFirstName, firstName) : super.findStudentsByFirstName(students, firstName);
+    }
+
+    @Override
+    public List<Student> findStudentsByLastName(Collection<Student> students, String lastName) {
+        return students == roster ? find(byLastName, lastName) : super.findStudentsByLastName(students, lastName);
+    }
+
+    @Override
+    public List<Student> findStudentsByGroup(Collection<Student> students, String group) {
+        return students == roster ? find(byGroup, group) : super.findStudentsByGroup(students, group);
+    }
+
+    @Override
+    public Map<String, String> findStudentNamesByGroup(Collection<Student> students, String group) {
+        return students == roster
+                ? new HashMap<>(namesByGroup.getOrDefault(group, Collections.emptyMap()))
+                : super.findStudentNamesByGroup(students, group);
+    }
+}
@@ -7,17 +7,49 @@ import info.kgeorgiy.java.advanced.student.StudentGroupQuery;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @SuppressWarnings("unused")
 public class StudentDB implements StudentGroupQuery {
-    private static final Comparator<Student> STUDENT_BY_NAME_COMPARATOR = Comparator
+    static final Comparator<Student> STUDENT_BY_NAME_COMPARATOR = Comparator
             .comparing(Student::getLastName)
             .thenComparing(Student::getFirstName)
             .thenComparingInt(Student::getId);
 
+    private final int parallelThreshold;
+
+    public StudentDB() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a database that runs queries on collections of at least {@code parallelThreshold} students
+     * with parallel streams. Results are the same as of sequential queries.
+     */
+    public StudentDB(int parallelThreshold) {
+        if (parallelThreshold < 0) {
+            throw new IllegalArgumentException("Parallel threshold should be non-negative!");
+        }
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    private <E> Stream<E> stream(Collection<E> collection) {
+        return collection.size() >= parallelThreshold ? collection.parallelStream() : collection.stream();
+    }
+
+    /**
+     * Groups students by key. Parallel streams use a concurrent collector when order of students
+     * in the groups doesn't matter.
+     */
+    private static <K> Map<K, List<Student>> groupBy(Stream<Student> students, Function<Student, K> key,
+                                                     boolean ordered) {
+        return students.isParallel() && !ordered
+                ? students.collect(Collectors.groupingByConcurrent(key))
+                : students.collect(Collectors.groupingBy(key));
+    }
+
     private <E> List<E> getBy(List<Student> students, Function<Student, E> mapperFunction) {
-        return students
-                .stream()
+        return stream(students)
                 .map(mapperFunction)
                 .collect(Collectors.toList());
     }
@@ -53,15 +85,13 @@ public class StudentDB implements StudentGroupQuery {
 
     @Override
     public String getMinStudentFirstName(List<Student> students) {
-        return students.isEmpty() ? EMPTY : students
-                .stream()
+        return students.isEmpty() ? EMPTY : stream(students)
                 .min(Student::compareTo).orElseThrow(() -> new IllegalStateException("No students found!"))
                 .getFirstName();
     }
 
     private List<Student> sortStudentsBy(Collection<Student> students, Comparator<Student> comparator) {
-        return students
-                .stream()
+        return stream(students)
                 .sorted(comparator)
                 .collect(Collectors.toList());
     }
@@ -79,8 +109,7 @@ public class StudentDB implements StudentGroupQuery {
     private <E> List<Student> findStudentsBy(Collection<Student> students,
                                              Function<Student, E> function,
                                              E value) {
-        return students
-                .stream()
+        return stream(students)
                 .filter(s -> Objects.equals(function.apply(s), value))
                 .sorted(STUDENT_BY_NAME_COMPARATOR)
                 .collect(Collectors.toList());
@@ -103,10 +132,7 @@ public class StudentDB implements StudentGroupQuery {
 
     @Override
     public Map<String, String> findStudentNamesByGroup(Collection<Student> students, String group) {
-        return students
-                .stream()
-                .filter(s -> Objects.equals(s.getGroup(), group))
-                .collect(Collectors.groupingBy(Student::getLastName))
+        return groupBy(stream(students).filter(s -> Objects.equals(s.getGroup(), group)), Student::getLastName, false)
                 .entrySet().stream()
                 .collect(Collectors.toMap(Map.Entry::getKey, g -> g.getValue().stream()
                         .map(Student::getFirstName)
@@ -114,12 +140,9 @@ public class StudentDB implements StudentGroupQuery {
     }
 
     private List<Group> getGroupsBy(Collection<Student> students, Comparator<Student> comparator) {
-        return students
-                .stream()
-                .collect(Collectors.groupingBy(Student::getGroup))
+        return groupBy(stream(students), Student::getGroup, true)
                 .entrySet().stream().sorted(Map.Entry.comparingByKey())
-                .map(entry -> new Group(entry.getKey(), entry.getValue()
-                        .stream()
+                .map(entry -> new Group(entry.getKey(), stream(entry.getValue())
                         .sorted(comparator)
                         .collect(Collectors.toList())))
                 .collect(Collectors.toList());
@@ -137,9 +160,7 @@ public class StudentDB implements StudentGroupQuery {
 
     private String getLargestGroupBy(Collection<Student> students,
                                             Function<Map.Entry<String, List<Student>>, Integer> _size) {
-        return students.isEmpty() ? EMPTY : students
-                .stream()
-                .collect(Collectors.groupingBy(Student::getGroup))
+        return students.isEmpty() ? EMPTY : groupBy(stream(students), Student::getGroup, false)
                 .entrySet().stream()
                 .sorted(Map.Entry.comparingByKey())
                 .max(Comparator.comparing(_size)).stream()
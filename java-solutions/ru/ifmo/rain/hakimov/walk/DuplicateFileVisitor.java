@@ -0,0 +1,275 @@
+package ru.ifmo.rain.hakimov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Collects files during the walk and reports groups of identical ones.
+ * Candidates are narrowed by size, then by a hash of the first and the last blocks, and files that still collide
+ * are compared byte by byte, reading all of them side by side once. Hashes may collide, contents may not.
+ * Only the first file of every group is then hashed completely, as the others share its hash.
+ * Hard links to an already collected file and empty files are skipped.
+ */
+public class DuplicateFileVisitor extends HashFileVisitor {
+    private static final int EDGE_BLOCK_SIZE = 4096;
+    private static final int COMPARE_BLOCK_SIZE = 1 << 16;
+    // Larger sets of candidates are compared in slices, whose groups are then merged
+    private static final int MAX_OPEN_FILES = 256;
+
+    private static class Candidate {
+        final Path file;
+        final BasicFileAttributes attrs;
+        final int order;
+        long hash;
+
+        Candidate(Path file, BasicFileAttributes attrs, int order) {
+            this.file = file;
+            this.attrs = attrs;
+            this.order = order;
+        }
+    }
+
+    private final Map<Long, List<Candidate>> bySize = new HashMap<>();
+    private final Set<Object> fileKeys = new HashSet<>();
+    private int visited;
+
+    DuplicateFileVisitor(ResultWriter resultWriter, HashCache cache, WalkStatistics statistics,
+                         WalkOptions options) {
+        super(resultWriter, cache, statistics, options);
+    }
+
+    @Override
+    protected void hashFile(Path file, BasicFileAttributes attrs) {
+        if (attrs == null || !attrs.isRegularFile() || attrs.size() == 0) {
+            return;
+        }
+
+        Object fileKey = attrs.fileKey();
+        if (fileKey != null && !fileKeys.add(fileKey)) {
+            return;
+        }
+
+        bySize.computeIfAbsent(attrs.size(), size -> new ArrayList<>()).add(new Candidate(file, attrs, visited++));
+    }
+
+    @Override
+    protected void log(char tag, long hashCode, String pathName) {
+        // Files that can't be visited can't be compared
+    }
+
+    void writeDuplicates() throws IOException {
+        List<List<Candidate>> groups = new ArrayList<>();
+
+        for (List<Candidate> sameSize : bySize.values()) {
+            if (sameSize.size() < 2) {
+                continue;
+            }
+
+            for (List<Candidate> sameEdges : split(sameSize, this::edgeHash)) {
+                for (List<Candidate> group : splitByContents(sameEdges)) {
+                    if (isEdgeHashed(group.get(0).attrs) || hashContents(group)) {
+                        groups.add(group);
+                    }
+                }
+            }
+        }
+
+        groups.sort(Comparator.comparingInt(group -> group.get(0).order));
+
+        ResultWriter resultWriter = resultWriter();
+        for (int i = 0; i < groups.size(); i++) {
+            if (i > 0) {
+                resultWriter.writeSeparator();
+            }
+            for (Candidate candidate : groups.get(i)) {
+                char tag = isEdgeHashed(candidate.attrs) ? ResultWriter.NO_TAG : tag(candidate.attrs);
+                resultWriter.write(tag, candidate.hash, candidate.file.toString());
+            }
+        }
+    }
+
+    /**
+     * Edges of small files cover them entirely, so their edge hash is the final one, which is never tree-hashed.
+     */
+    private static boolean isEdgeHashed(BasicFileAttributes attrs) {
+        return attrs.size() <= 2L * EDGE_BLOCK_SIZE;
+    }
+
+    private long edgeHash(Candidate candidate) throws IOException {
+        return FileHasher.hashEdges(candidate.file, hashFunction(), EDGE_BLOCK_SIZE, statistics());
+    }
+
+    private interface CandidateHash {
+        long apply(Candidate candidate) throws IOException;
+    }
+
+    /**
+     * Splits candidates into groups of at least two with equal hashes, preserving visiting order.
+     * Candidates that can't be read are dropped.
+     */
+    private static List<List<Candidate>> split(List<Candidate> candidates, CandidateHash hashFunction) {
+        Map<Long, List<Candidate>> byHash = new LinkedHashMap<>();
+
+        for (Candidate candidate : candidates) {
+            try {
+                candidate.hash = hashFunction.apply(candidate);
+                byHash.computeIfAbsent(candidate.hash, hash -> new ArrayList<>()).add(candidate);
+            } catch (IOException e) {
+                System.err.println("Unable to read " + candidate.file + ": " + e.getMessage());
+            }
+        }
+
+        List<List<Candidate>> groups = new ArrayList<>();
+        for (List<Candidate> group : byHash.values()) {
+            if (group.size() > 1) {
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Gives every file of the group the hash of its first file. Returns {@code false} if it can't be read.
+     */
+    private boolean hashContents(List<Candidate> group) {
+        Candidate first = group.get(0);
+        try {
+            long hash = hash(first.file, first.attrs);
+            for (Candidate candidate : group) {
+                candidate.hash = hash;
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Unable to read " + first.file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Splits candidates of the same size into groups of at least two with equal contents, preserving visiting order.
+     * Candidates that can't be read are dropped.
+     */
+    private List<List<Candidate>> splitByContents(List<Candidate> candidates) throws IOException {
+        List<List<Candidate>> groups = new ArrayList<>();
+
+        for (int from = 0; from < candidates.size(); from += MAX_OPEN_FILES) {
+            List<Candidate> slice = candidates.subList(from, Math.min(from + MAX_OPEN_FILES, candidates.size()));
+            if (from == 0) {
+                groups.addAll(compareContents(slice));
+            } else {
+                for (List<Candidate> sameContents : compareContents(slice)) {
+                    merge(groups, sameContents);
+                }
+            }
+        }
+
+        groups.removeIf(group -> group.size() < 2);
+        return groups;
+    }
+
+    private static void merge(List<List<Candidate>> groups, List<Candidate> sameContents) {
+        for (List<Candidate> group : groups) {
+            try {
+                if (Files.mismatch(group.get(0).file, sameContents.get(0).file) < 0) {
+                    group.addAll(sameContents);
+                    return;
+                }
+            } catch (IOException e) {
+                System.err.println("Unable to read " + sameContents.get(0).file + ": " + e.getMessage());
+                return;
+            }
+        }
+        groups.add(sameContents);
+    }
+
+    /**
+     * Splits candidates of the same size into classes with equal contents, including single files.
+     * All files are read once, block by block, and a class is read further only while it has at least two files.
+     */
+    private List<List<Candidate>> compareContents(List<Candidate> candidates) throws IOException {
+        Map<Candidate, FileChannel> channels = new IdentityHashMap<>();
+        try {
+            List<Candidate> readable = new ArrayList<>();
+            for (Candidate candidate : candidates) {
+                try {
+                    channels.put(candidate, FileChannel.open(candidate.file, StandardOpenOption.READ));
+                    readable.add(candidate);
+                } catch (IOException e) {
+                    System.err.println("Unable to read " + candidate.file + ": " + e.getMessage());
+                }
+            }
+
+            List<List<Candidate>> classes = new ArrayList<>();
+            List<List<Candidate>> active = new ArrayList<>(List.of(readable));
+            Deque<ByteBuffer> buffers = new ArrayDeque<>();
+            long size = candidates.get(0).attrs.size();
+            for (long position = 0; position < size && !active.isEmpty(); position += COMPARE_BLOCK_SIZE) {
+                List<List<Candidate>> next = new ArrayList<>();
+                for (List<Candidate> sameContents : active) {
+                    for (List<Candidate> sameBlocks : compareBlocks(sameContents, channels, position, buffers)) {
+                        if (sameBlocks.size() > 1) {
+                            next.add(sameBlocks);
+                        } else {
+                            classes.add(sameBlocks);
+                        }
+                    }
+                }
+                active = next;
+            }
+            classes.addAll(active);
+            return classes;
+        } finally {
+            for (FileChannel channel : channels.values()) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Splits a class of files by their blocks at the given position. Buffers are taken from and returned to the pool.
+     */
+    private List<List<Candidate>> compareBlocks(List<Candidate> sameContents, Map<Candidate, FileChannel> channels,
+                                                long position, Deque<ByteBuffer> buffers) {
+        List<ByteBuffer> blocks = new ArrayList<>();
+        List<List<Candidate>> sameBlocks = new ArrayList<>();
+
+        for (Candidate candidate : sameContents) {
+            ByteBuffer buffer = buffers.isEmpty() ? ByteBuffer.allocate(COMPARE_BLOCK_SIZE) : buffers.pop();
+            try {
+                read(channels.get(candidate), position, buffer);
+            } catch (IOException e) {
+                System.err.println("Unable to read " + candidate.file + ": " + e.getMessage());
+                buffers.push(buffer);
+                continue;
+            }
+
+            int index = blocks.indexOf(buffer);
+            if (index < 0) {
+                blocks.add(buffer);
+                sameBlocks.add(new ArrayList<>());
+                index = blocks.size() - 1;
+            } else {
+                buffers.push(buffer);
+            }
+            sameBlocks.get(index).add(candidate);
+        }
+
+        buffers.addAll(blocks);
+        return sameBlocks;
+    }
+
+    private void read(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        int read;
+        while (buffer.hasRemaining() && (read = channel.read(buffer, position + buffer.position())) >= 0) {
+            statistics().recorder().bytesRead(read);
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,195 @@
+package ru.ifmo.rain.hakimov.walk;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.RecursiveAction;
+
+class FileHasher {
+    static final char TREE_TAG = 'T';
+
+    private static final int BUFFER_SIZE = 1 << 18;
+    private static final long MAP_THRESHOLD = 1L << 24;
+    private static final long MAP_WINDOW_SIZE = 1L << 26;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(
+            () -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    private FileHasher() {
+    }
+
+    private static FileChannel open(Path filePath, WalkStatistics.Recorder recorder) throws IOException {
+        long start = System.nanoTime();
+        FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ);
+        recorder.record(WalkStatistics.Phase.OPEN, System.nanoTime() - start);
+        return channel;
+    }
+
+    static long hash(Path filePath, HashFunction hashFunction, WalkStatistics statistics) throws IOException {
+        WalkStatistics.Recorder recorder = statistics.recorder();
+
+        try (FileChannel channel = open(filePath, recorder)) {
+            long start = System.nanoTime();
+            HashFunction.Hasher hasher = hashFunction.newHasher();
+            long position = 0;
+            long size = channel.size();
+
+            if (size >= MAP_THRESHOLD) {
+                while (position < size) {
+                    long windowSize = Math.min(MAP_WINDOW_SIZE, size - position);
+                    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+                    hasher.update(window);
+                    position += windowSize;
+                }
+                channel.position(position);
+            }
+
+            ByteBuffer buffer = BUFFERS.get();
+            buffer.clear();
+            int read;
+            while ((read = channel.read(buffer)) >= 0) {
+                buffer.flip();
+                hasher.update(buffer);
+                buffer.clear();
+                position += read;
+            }
+
+            long hash = hasher.finish();
+            recorder.record(WalkStatistics.Phase.READ_HASH, System.nanoTime() - start);
+            recorder.bytesRead(position);
+            recorder.fileHashed();
+            return hash;
+        }
+    }
+
+    /**
+     * Hashes the first and the last {@code blockSize} bytes of the file, or the whole file if it is shorter.
+     */
+    static long hashEdges(Path filePath, HashFunction hashFunction, int blockSize,
+                          WalkStatistics statistics) throws IOException {
+        WalkStatistics.Recorder recorder = statistics.recorder();
+
+        try (FileChannel channel = open(filePath, recorder)) {
+            long start = System.nanoTime();
+            HashFunction.Hasher hasher = hashFunction.newHasher();
+            long size = channel.size();
+
+            long read = hashRange(channel, hasher, 0, Math.min(blockSize, size))
+                    + hashRange(channel, hasher, Math.max(blockSize, size - blockSize), size);
+
+            long hash = hasher.finish();
+            recorder.record(WalkStatistics.Phase.READ_HASH, System.nanoTime() - start);
+            recorder.bytesRead(read);
+            return hash;
+        }
+    }
+
+    /**
+     * Splits the file into chunks of {@code chunkSize} bytes, hashes them in parallel
+     * and returns the hash of the concatenated big-endian chunk hashes.
+     */
+    static long treeHash(Path filePath, HashFunction hashFunction, long chunkSize,
+                         WalkStatistics statistics) throws IOException {
+        WalkStatistics.Recorder recorder = statistics.recorder();
+
+        try (FileChannel channel = open(filePath, recorder)) {
+            long size = channel.size();
+            long chunks = (size + chunkSize - 1) / chunkSize;
+            int hashBytes = hashFunction.bits() / 8;
+            if (chunks > Integer.MAX_VALUE / hashBytes) {
+                throw new IOException("Too many chunks in " + filePath);
+            }
+
+            long[] chunkHashes = new long[(int) chunks];
+            try {
+                new ChunkTask(channel, hashFunction, statistics, chunkSize, size, chunkHashes, 0, chunkHashes.length)
+                        .invoke();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            ByteBuffer combined = ByteBuffer.allocate(chunkHashes.length * hashBytes);
+            for (long chunkHash : chunkHashes) {
+                for (int shift = (hashBytes - 1) * 8; shift >= 0; shift -= 8) {
+                    combined.put((byte) (chunkHash >>> shift));
+                }
+            }
+
+            HashFunction.Hasher hasher = hashFunction.newHasher();
+            hasher.update(combined.flip());
+            recorder.fileHashed();
+            return hasher.finish();
+        }
+    }
+
+    private static class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final HashFunction hashFunction;
+        private final WalkStatistics statistics;
+        private final long chunkSize;
+        private final long size;
+        private final long[] chunkHashes;
+        private final int from;
+        private final int to;
+
+        ChunkTask(FileChannel channel, HashFunction hashFunction, WalkStatistics statistics, long chunkSize, long size,
+                  long[] chunkHashes, int from, int to) {
+            this.channel = channel;
+            this.hashFunction = hashFunction;
+            this.statistics = statistics;
+            this.chunkSize = chunkSize;
+            this.size = size;
+            this.chunkHashes = chunkHashes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(channel, hashFunction, statistics, chunkSize, size, chunkHashes, from, middle),
+                        new ChunkTask(channel, hashFunction, statistics, chunkSize, size, chunkHashes, middle, to));
+                return;
+            }
+
+            try {
+                long startNanos = System.nanoTime();
+                HashFunction.Hasher hasher = hashFunction.newHasher();
+                long start = from * chunkSize;
+                long read = hashRange(channel, hasher, start, Math.min(size, start + chunkSize));
+                chunkHashes[from] = hasher.finish();
+
+                WalkStatistics.Recorder recorder = statistics.recorder();
+                recorder.record(WalkStatistics.Phase.READ_HASH, System.nanoTime() - startNanos);
+                recorder.bytesRead(read);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static long hashRange(FileChannel channel, HashFunction.Hasher hasher, long from, long to) throws IOException {
+        ByteBuffer buffer = BUFFERS.get();
+        long position = from;
+
+        while (position < to) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), to - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("File was truncated while hashing");
+            }
+            buffer.flip();
+            hasher.update(buffer);
+            position += read;
+        }
+        return position - from;
+    }
+}
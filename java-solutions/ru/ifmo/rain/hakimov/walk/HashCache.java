@@ -0,0 +1,201 @@
+package ru.ifmo.rain.hakimov.walk;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only on-disk cache of file hashes keyed by path, size, modification time and file key.
+ * Every record carries its own checksum, so a record torn by a killed process is dropped on the next load.
+ * A file that doesn't start with the magic number of the current format is discarded and rebuilt.
+ */
+class HashCache implements Closeable, Flushable {
+    private static final int MAGIC = 0x57484332;
+    private static final int HEADER_SIZE = Integer.BYTES;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
+    private static class Entry {
+        final long size;
+        final long modifiedTime;
+        final String fileKey;
+        final String algorithm;
+        final long hash;
+
+        Entry(long size, long modifiedTime, String fileKey, String algorithm, long hash) {
+            this.size = size;
+            this.modifiedTime = modifiedTime;
+            this.fileKey = fileKey;
+            this.algorithm = algorithm;
+            this.hash = hash;
+        }
+
+        Entry(BasicFileAttributes attrs, String algorithm, long hash) {
+            this(attrs.size(), attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS), fileKey(attrs), algorithm, hash);
+        }
+
+        boolean matches(BasicFileAttributes attrs, String algorithm) {
+            return this.algorithm.equals(algorithm)
+                    && size == attrs.size()
+                    && modifiedTime == attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS)
+                    && fileKey.equals(fileKey(attrs));
+        }
+
+        private static String fileKey(BasicFileAttributes attrs) {
+            Object key = attrs.fileKey();
+            return key == null ? "" : key.toString();
+        }
+    }
+
+    private final Path cachePath;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private DataOutputStream output;
+    private long records;
+
+    private HashCache(Path cachePath) {
+        this.cachePath = cachePath;
+    }
+
+    static HashCache open(Path cachePath) throws IOException {
+        HashCache cache = new HashCache(cachePath);
+        cache.load();
+        return cache;
+    }
+
+    private void load() throws IOException {
+        FileChannel channel = FileChannel.open(cachePath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long validLength = 0;
+
+            if (channel.size() >= HEADER_SIZE) {
+                DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+                if (input.readInt() == MAGIC) {
+                    validLength = HEADER_SIZE;
+
+                    long recordLength;
+                    while ((recordLength = readRecord(input)) > 0) {
+                        validLength += recordLength;
+                        records++;
+                    }
+                }
+            }
+
+            channel.truncate(validLength);
+            channel.position(validLength);
+            output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            if (validLength == 0) {
+                output.writeInt(MAGIC);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private long readRecord(DataInputStream input) throws IOException {
+        try {
+            int length = input.readInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE) {
+                return 0;
+            }
+
+            byte[] payload = new byte[length];
+            input.readFully(payload);
+            int checksum = input.readInt();
+
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                return 0;
+            }
+
+            DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+            String path = record.readUTF();
+            entries.put(path, new Entry(record.readLong(), record.readLong(), record.readUTF(), record.readUTF(),
+                    record.readLong()));
+            return Integer.BYTES + length + Integer.BYTES;
+        } catch (EOFException e) {
+            return 0;
+        }
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    Long lookup(Path file, BasicFileAttributes attrs, String algorithm) {
+        Entry entry = entries.get(key(file));
+        return entry != null && entry.matches(attrs, algorithm) ? entry.hash : null;
+    }
+
+    void store(Path file, BasicFileAttributes attrs, String algorithm, long hash) throws IOException {
+        String path = key(file);
+        Entry entry = new Entry(attrs, algorithm, hash);
+        entries.put(path, entry);
+        append(path, entry);
+    }
+
+    private synchronized void append(String path, Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeUTF(path);
+        record.writeLong(entry.size);
+        record.writeLong(entry.modifiedTime);
+        record.writeUTF(entry.fileKey);
+        record.writeUTF(entry.algorithm);
+        record.writeLong(entry.hash);
+
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.toByteArray());
+
+        output.writeInt(bytes.size());
+        bytes.writeTo(output);
+        output.writeInt((int) crc.getValue());
+        records++;
+    }
+
+    /**
+     * Rewrites the cache keeping only the latest record of every path.
+     * The new file replaces the old one atomically, so an interrupted compaction leaves the old cache intact.
+     */
+    synchronized void compact() throws IOException {
+        output.close();
+
+        Path tmpPath = cachePath.resolveSibling(cachePath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmpPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            output.writeInt(MAGIC);
+            records = 0;
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                append(entry.getKey(), entry.getValue());
+            }
+            output.flush();
+            channel.force(true);
+        }
+        Files.move(tmpPath, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        FileChannel channel = FileChannel.open(cachePath, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (records >= MIN_COMPACTION_RECORDS && records > 2L * entries.size()) {
+            compact();
+        }
+        output.close();
+    }
+}
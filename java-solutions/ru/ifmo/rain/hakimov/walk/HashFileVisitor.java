@@ -2,66 +2,217 @@ package ru.ifmo.rain.hakimov.walk;
 
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.List;
 
 public class HashFileVisitor extends SimpleFileVisitor<Path> {
-    private final BufferedWriter fileWriter;
+    private final ResultWriter resultWriter;
+    private final HashFunction hashFunction;
+    private final HashCache cache;
+    private final MerkleDigests merkle;
+    private final long treeChunkSize;
+    private final WalkStatistics statistics;
+    private final WalkIndex.Builder index;
+    private List<WalkPlanner.Result> capture;
+    private WalkStatistics.Recorder traversalRecorder;
+    private long traversalResumedNanos;
 
-    HashFileVisitor(BufferedWriter fileWriter) {
-        this.fileWriter = fileWriter;
+    HashFileVisitor(ResultWriter resultWriter, HashCache cache, WalkStatistics statistics, WalkOptions options) {
+        this.resultWriter = resultWriter;
+        this.hashFunction = options.hashFunction;
+        this.cache = cache;
+        this.statistics = statistics;
+        this.merkle = options.merkle ? new MerkleDigests(hashFunction) : null;
+        this.treeChunkSize = options.treeChunkSize;
+        this.index = options.indexFileName != null ? new WalkIndex.Builder(hashFunction.bits()) : null;
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        traversed();
+        if (merkle != null) {
+            enterDirectory(dir);
+        }
+        return resumeTraversal(FileVisitResult.CONTINUE);
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        traversed();
+        if (merkle != null) {
+            leaveDirectory(dir);
+        }
+        return resumeTraversal(super.postVisitDirectory(dir, exc));
     }
 
     @Override
     public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-        hashFNV(file, fileWriter);
-        return FileVisitResult.CONTINUE;
+        traversed();
+        hashFile(file, followLinks(file, attrs));
+        return resumeTraversal(FileVisitResult.CONTINUE);
     }
 
     @Override
     public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-        log(fileWriter, 0, file.toString());
-        return FileVisitResult.CONTINUE;
-    }
-
-    private void hashFNV(Path filePath, BufferedWriter bufferedWriter) throws IOException {
-        final int FNV_PRIME = 0x01000193;
-        final int BLOCK_SIZE = 7777;
-        int hash = 0x811c9dc5;
-
-        byte[] block = new byte[BLOCK_SIZE];
-        int readBytesCount;
-        try (InputStream inputStream = Files.newInputStream(filePath)) {
-            while ((readBytesCount = inputStream.read(block)) >= 0) {
-                for (int i = 0; i < readBytesCount; ++i) {
-                    hash *= FNV_PRIME;
-                    hash ^= Byte.toUnsignedInt(block[i]);
-                }
-            }
+        traversed();
+        traversalRecorder.fileFailed();
+        log(0, file.toString());
+        return resumeTraversal(FileVisitResult.CONTINUE);
+    }
+
+    /**
+     * Time between visitor callbacks is spent by the walk itself, listing directories and reading attributes.
+     */
+    private void traversed() {
+        traversalRecorder.record(WalkStatistics.Phase.TRAVERSAL, System.nanoTime() - traversalResumedNanos);
+    }
+
+    private FileVisitResult resumeTraversal(FileVisitResult result) {
+        traversalResumedNanos = System.nanoTime();
+        return result;
+    }
+
+    protected void hashFile(Path file, BasicFileAttributes attrs) throws IOException {
+        long hash;
+        try {
+            hash = hash(file, attrs);
         } catch (IOException e) {
             hash = 0;
         }
+        log(tag(attrs), hash, file.toString());
+    }
+
+    /**
+     * Files larger than one chunk are tree-hashed when tree hashing is enabled.
+     */
+    boolean isTreeHashed(BasicFileAttributes attrs) {
+        return treeChunkSize > 0 && attrs != null && attrs.size() > treeChunkSize;
+    }
+
+    char tag(BasicFileAttributes attrs) {
+        return isTreeHashed(attrs) ? FileHasher.TREE_TAG : ResultWriter.NO_TAG;
+    }
+
+    long hash(Path file, BasicFileAttributes attrs) throws IOException {
+        boolean tree = isTreeHashed(attrs);
+        String algorithm = tree ? hashFunction.name() + "/tree/" + treeChunkSize : hashFunction.name();
+
+        if (cache != null && attrs != null) {
+            Long cached = cache.lookup(file, attrs, algorithm);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        long hash;
+        try {
+            hash = tree
+                    ? FileHasher.treeHash(file, hashFunction, treeChunkSize, statistics)
+                    : FileHasher.hash(file, hashFunction, statistics);
+        } catch (IOException e) {
+            statistics.recorder().fileFailed();
+            throw e;
+        }
+
+        if (cache != null && attrs != null) {
+            try {
+                cache.store(file, attrs, algorithm, hash);
+            } catch (IOException e) {
+                System.err.println("Unable to update hash cache: " + e.getMessage());
+            }
+        }
+        return hash;
+    }
+
+    HashFunction hashFunction() {
+        return hashFunction;
+    }
+
+    ResultWriter resultWriter() {
+        return resultWriter;
+    }
+
+    WalkStatistics statistics() {
+        return statistics;
+    }
+
+    protected void log(long hashCode, String pathName) throws IOException {
+        log(ResultWriter.NO_TAG, hashCode, pathName);
+    }
+
+    protected void log(char tag, long hashCode, String pathName) throws IOException {
+        if (merkle != null) {
+            merkle.addFile(pathName, hashCode);
+        }
+        emit(tag, hashCode, pathName);
+    }
+
+    /**
+     * Writes a result line, or keeps it in the capture list if one is set.
+     */
+    void emit(char tag, long hashCode, String pathName) throws IOException {
+        if (capture != null) {
+            capture.add(new WalkPlanner.Result(tag, hashCode, pathName));
+            return;
+        }
 
-        log(bufferedWriter, hash, filePath.toString());
+        if (index != null) {
+            index.add(tag, hashCode, pathName);
+        }
+        resultWriter.write(tag, hashCode, pathName);
     }
 
-    private void log(BufferedWriter bufferedWriter, int hashCode, String pathName) throws IOException {
-        bufferedWriter.write(String.format("%08x", hashCode) + " " + pathName);
-        bufferedWriter.newLine();
+    void capture(List<WalkPlanner.Result> results) {
+        capture = results;
     }
 
-    /* package-private */ void hashFile(String pathName, BufferedWriter bufferedWriter, HashFileVisitor hashVisitor) throws IOException {
+    /**
+     * Waits until all results of the walked paths are logged.
+     */
+    void flush() throws IOException {
+    }
+
+    protected void enterDirectory(Path dir) throws IOException {
+        merkle.enterDirectory();
+    }
+
+    protected void leaveDirectory(Path dir) throws IOException {
+        emit(MerkleDigests.DIRECTORY_TAG, merkle.leaveDirectory(dir), dir.toString());
+    }
+
+    void writeIndex(Path indexPath) throws IOException {
+        index.write(indexPath);
+    }
+
+    /* package-private */ void walk(String pathName) throws IOException {
         try {
             Path currentPath = Paths.get(pathName);
 
             if (Files.isDirectory(currentPath)) {
-                Files.walkFileTree(currentPath, hashVisitor);
+                traversalRecorder = statistics.recorder();
+                traversalResumedNanos = System.nanoTime();
+                Files.walkFileTree(currentPath, this);
             } else {
-                hashVisitor.hashFNV(currentPath, fileWriter);
+                hashFile(currentPath, readAttributes(currentPath));
             }
         } catch (InvalidPathException e) {
-            hashVisitor.log(fileWriter, 0, pathName);
+            log(0, pathName);
+        }
+    }
+
+    /**
+     * Attributes of the file a symbolic link points to: files are hashed, cached and tree-hashed by their contents,
+     * while the walk reports links themselves.
+     */
+    private static BasicFileAttributes followLinks(Path file, BasicFileAttributes attrs) {
+        return attrs != null && attrs.isSymbolicLink() ? readAttributes(file) : attrs;
+    }
+
+    private static BasicFileAttributes readAttributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
         }
     }
 }
@@ -0,0 +1,30 @@
+package ru.ifmo.rain.hakimov.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hash algorithm used by the walker.
+ * Implementations are stateless factories of {@link Hasher}s, so one instance can be shared between threads.
+ */
+public interface HashFunction {
+    /**
+     * Streaming hash state of a single file.
+     */
+    interface Hasher {
+        /**
+         * Consumes all remaining bytes of the buffer. The buffer's byte order is preserved.
+         */
+        void update(ByteBuffer buffer);
+
+        /**
+         * Returns hash of all consumed bytes in the lowest {@link #bits()} bits.
+         */
+        long finish();
+    }
+
+    String name();
+
+    int bits();
+
+    Hasher newHasher();
+}
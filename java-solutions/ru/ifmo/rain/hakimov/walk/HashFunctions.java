@@ -0,0 +1,268 @@
+package ru.ifmo.rain.hakimov.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+
+class HashFunctions {
+    static final HashFunction FNV32 = new Fnv32();
+    static final HashFunction FNV64 = new Fnv64();
+    static final HashFunction CRC32C = new Crc32c();
+    static final HashFunction XXH64 = new XxHash64();
+
+    private static final List<HashFunction> ALL = List.of(FNV32, FNV64, CRC32C, XXH64);
+
+    private HashFunctions() {
+    }
+
+    static HashFunction forName(String name) {
+        return ALL.stream()
+                .filter(function -> function.name().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown hash function " + name + ", expected one of "
+                        + ALL.stream().map(HashFunction::name).collect(Collectors.joining(", "))));
+    }
+
+    private static class Fnv32 implements HashFunction {
+        private static final int OFFSET_BASIS = 0x811c9dc5;
+        private static final int PRIME = 0x01000193;
+
+        @Override
+        public String name() {
+            return "fnv32";
+        }
+
+        @Override
+        public int bits() {
+            return Integer.SIZE;
+        }
+
+        @Override
+        public Hasher newHasher() {
+            return new Hasher() {
+                private int hash = OFFSET_BASIS;
+
+                @Override
+                public void update(ByteBuffer buffer) {
+                    ByteOrder order = buffer.order();
+                    buffer.order(ByteOrder.BIG_ENDIAN);
+
+                    int hash = this.hash;
+                    while (buffer.remaining() >= Long.BYTES) {
+                        long word = buffer.getLong();
+                        hash = (hash * PRIME) ^ (int) (word >>> 56);
+                        hash = (hash * PRIME) ^ ((int) (word >>> 48) & 0xff);
+                        hash = (hash * PRIME) ^ ((int) (word >>> 40) & 0xff);
+                        hash = (hash * PRIME) ^ ((int) (word >>> 32) & 0xff);
+                        hash = (hash * PRIME) ^ ((int) (word >>> 24) & 0xff);
+                        hash = (hash * PRIME) ^ ((int) (word >>> 16) & 0xff);
+                        hash = (hash * PRIME) ^ ((int) (word >>> 8) & 0xff);
+                        hash = (hash * PRIME) ^ ((int) word & 0xff);
+                    }
+                    while (buffer.hasRemaining()) {
+                        hash = (hash * PRIME) ^ Byte.toUnsignedInt(buffer.get());
+                    }
+                    this.hash = hash;
+
+                    buffer.order(order);
+                }
+
+                @Override
+                public long finish() {
+                    return Integer.toUnsignedLong(hash);
+                }
+            };
+        }
+    }
+
+    private static class Fnv64 implements HashFunction {
+        private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+        private static final long PRIME = 0x100000001b3L;
+
+        @Override
+        public String name() {
+            return "fnv64";
+        }
+
+        @Override
+        public int bits() {
+            return Long.SIZE;
+        }
+
+        @Override
+        public Hasher newHasher() {
+            return new Hasher() {
+                private long hash = OFFSET_BASIS;
+
+                @Override
+                public void update(ByteBuffer buffer) {
+                    ByteOrder order = buffer.order();
+                    buffer.order(ByteOrder.BIG_ENDIAN);
+
+                    long hash = this.hash;
+                    while (buffer.remaining() >= Long.BYTES) {
+                        long word = buffer.getLong();
+                        for (int shift = 56; shift >= 0; shift -= 8) {
+                            hash = (hash * PRIME) ^ ((word >>> shift) & 0xff);
+                        }
+                    }
+                    while (buffer.hasRemaining()) {
+                        hash = (hash * PRIME) ^ Byte.toUnsignedLong(buffer.get());
+                    }
+                    this.hash = hash;
+
+                    buffer.order(order);
+                }
+
+                @Override
+                public long finish() {
+                    return hash;
+                }
+            };
+        }
+    }
+
+    private static class Crc32c implements HashFunction {
+        @Override
+        public String name() {
+            return "crc32c";
+        }
+
+        @Override
+        public int bits() {
+            return Integer.SIZE;
+        }
+
+        @Override
+        public Hasher newHasher() {
+            return new Hasher() {
+                private final CRC32C crc = new CRC32C();
+
+                @Override
+                public void update(ByteBuffer buffer) {
+                    crc.update(buffer);
+                }
+
+                @Override
+                public long finish() {
+                    return crc.getValue();
+                }
+            };
+        }
+    }
+
+    /**
+     * XXH64 with zero seed. Input is consumed in 32-byte stripes, a partial stripe is kept between updates.
+     */
+    private static class XxHash64 implements HashFunction {
+        private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+        private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long PRIME_3 = 0x165667B19E3779F9L;
+        private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+        private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+        private static final int STRIPE_SIZE = 32;
+
+        @Override
+        public String name() {
+            return "xxh64";
+        }
+
+        @Override
+        public int bits() {
+            return Long.SIZE;
+        }
+
+        private static long round(long accumulator, long input) {
+            return Long.rotateLeft(accumulator + input * PRIME_2, 31) * PRIME_1;
+        }
+
+        private static long mergeRound(long hash, long accumulator) {
+            return (hash ^ round(0, accumulator)) * PRIME_1 + PRIME_4;
+        }
+
+        @Override
+        public Hasher newHasher() {
+            return new Hasher() {
+                private long v1 = PRIME_1 + PRIME_2;
+                private long v2 = PRIME_2;
+                private long v3 = 0;
+                private long v4 = -PRIME_1;
+                private long totalLength = 0;
+                private final ByteBuffer tail = ByteBuffer.allocate(STRIPE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+                private void stripe(ByteBuffer buffer) {
+                    v1 = round(v1, buffer.getLong());
+                    v2 = round(v2, buffer.getLong());
+                    v3 = round(v3, buffer.getLong());
+                    v4 = round(v4, buffer.getLong());
+                }
+
+                @Override
+                public void update(ByteBuffer buffer) {
+                    ByteOrder order = buffer.order();
+                    buffer.order(ByteOrder.LITTLE_ENDIAN);
+                    totalLength += buffer.remaining();
+
+                    if (tail.position() > 0) {
+                        while (tail.hasRemaining() && buffer.hasRemaining()) {
+                            tail.put(buffer.get());
+                        }
+                        if (tail.hasRemaining()) {
+                            buffer.order(order);
+                            return;
+                        }
+                        tail.flip();
+                        stripe(tail);
+                        tail.clear();
+                    }
+
+                    while (buffer.remaining() >= STRIPE_SIZE) {
+                        stripe(buffer);
+                    }
+                    tail.put(buffer);
+
+                    buffer.order(order);
+                }
+
+                @Override
+                public long finish() {
+                    long hash;
+                    if (totalLength >= STRIPE_SIZE) {
+                        hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+                                + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                        hash = mergeRound(hash, v1);
+                        hash = mergeRound(hash, v2);
+                        hash = mergeRound(hash, v3);
+                        hash = mergeRound(hash, v4);
+                    } else {
+                        hash = PRIME_5;
+                    }
+                    hash += totalLength;
+
+                    ByteBuffer rest = tail.duplicate().flip().order(ByteOrder.LITTLE_ENDIAN);
+                    while (rest.remaining() >= Long.BYTES) {
+                        hash ^= round(0, rest.getLong());
+                        hash = Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_4;
+                    }
+                    if (rest.remaining() >= Integer.BYTES) {
+                        hash ^= Integer.toUnsignedLong(rest.getInt()) * PRIME_1;
+                        hash = Long.rotateLeft(hash, 23) * PRIME_2 + PRIME_3;
+                    }
+                    while (rest.hasRemaining()) {
+                        hash ^= Byte.toUnsignedLong(rest.get()) * PRIME_5;
+                        hash = Long.rotateLeft(hash, 11) * PRIME_1;
+                    }
+
+                    hash ^= hash >>> 33;
+                    hash *= PRIME_2;
+                    hash ^= hash >>> 29;
+                    hash *= PRIME_3;
+                    hash ^= hash >>> 32;
+                    return hash;
+                }
+            };
+        }
+    }
+}
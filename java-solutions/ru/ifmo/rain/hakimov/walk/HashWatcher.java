@@ -0,0 +1,236 @@
+package ru.ifmo.rain.hakimov.walk;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps watching the walked roots and re-hashes files that are created or modified.
+ * Events are debounced per file, so a burst of writes results in a single {@code U <hash> <path>} record,
+ * and a file that keeps changing is re-hashed at least every {@link #MAX_DELAY_NANOS}.
+ * Files that are tree-hashed, which the walk tags with {@code T}, are updated as {@code V <hash> <path>}.
+ * Files that disappeared are reported as {@code R <zero hash> <path>}, and removed directories
+ * as {@code X <zero hash> <path>}.
+ */
+class HashWatcher {
+    static final char UPDATED_TAG = 'U';
+    static final char TREE_UPDATED_TAG = 'V';
+    static final char REMOVED_TAG = 'R';
+    static final char REMOVED_DIRECTORY_TAG = 'X';
+
+    private static final long DEBOUNCE_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final long MAX_DELAY_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private static class Burst {
+        final long start;
+        long deadline;
+
+        Burst(long start) {
+            this.start = start;
+        }
+    }
+
+    private final HashFileVisitor hashVisitor;
+    private final ResultWriter resultWriter;
+    private final HashCache cache;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Set<Path> treeDirectories = new HashSet<>();
+    private final Set<Path> removedDirectories = new HashSet<>();
+    private final Set<Path> watchedFiles = new HashSet<>();
+    private final Map<Path, Burst> pending = new LinkedHashMap<>();
+
+    HashWatcher(HashFileVisitor hashVisitor, ResultWriter resultWriter, HashCache cache) throws IOException {
+        this.hashVisitor = hashVisitor;
+        this.resultWriter = resultWriter;
+        this.cache = cache;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Makes {@link #watch} return once it finishes the current batch. May be called from any thread.
+     */
+    void stop() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * Watches the given roots until the thread is interrupted or the watcher is stopped.
+     */
+    void watch(List<String> pathNames) throws IOException {
+        try (watchService) {
+            for (String pathName : pathNames) {
+                try {
+                    Path root = Paths.get(pathName);
+                    if (Files.isDirectory(root)) {
+                        registerTree(root, false);
+                    } else {
+                        Path parent = root.toAbsolutePath().getParent();
+                        if (parent != null && Files.isDirectory(parent)) {
+                            watchedFiles.add(root);
+                            register(root.getParent() == null ? Paths.get("") : root.getParent());
+                        }
+                    }
+                } catch (InvalidPathException | IOException e) {
+                    System.err.println("Unable to watch " + pathName + ": " + e.getMessage());
+                }
+            }
+
+            flush();
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = nextKey();
+                if (key != null) {
+                    handle(key);
+                }
+                rehashDue();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    private void flush() throws IOException {
+        resultWriter.flush();
+        if (cache != null) {
+            try {
+                cache.flush();
+            } catch (IOException e) {
+                System.err.println("Unable to update hash cache: " + e.getMessage());
+            }
+        }
+    }
+
+    private WatchKey nextKey() throws InterruptedException {
+        if (pending.isEmpty()) {
+            return watchService.take();
+        }
+
+        long now = System.nanoTime();
+        long wait = pending.values().stream().mapToLong(burst -> burst.deadline - now).min().orElse(0);
+        return wait > 0 ? watchService.poll(wait, TimeUnit.NANOSECONDS) : watchService.poll();
+    }
+
+    private void register(Path dir) throws IOException {
+        WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        directories.put(key, dir);
+    }
+
+    private void registerTree(Path root, boolean rehashFiles) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                register(dir);
+                treeDirectories.add(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (rehashFiles) {
+                    schedule(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void handle(WatchKey key) {
+        Path dir = directories.get(key);
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                System.err.println("Some file system events were lost in " + dir);
+                continue;
+            }
+
+            Path file = dir.resolve((Path) event.context());
+            boolean inTree = treeDirectories.contains(dir);
+            if (!inTree && !watchedFiles.contains(file)) {
+                continue;
+            }
+
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE && treeDirectories.remove(file)) {
+                removedDirectories.add(file);
+                schedule(file);
+            } else if (inTree && event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(file)) {
+                try {
+                    registerTree(file, true);
+                } catch (IOException e) {
+                    System.err.println("Unable to watch " + file + ": " + e.getMessage());
+                }
+            } else {
+                schedule(file);
+            }
+        }
+
+        // Removed directories stay in treeDirectories until their removal is reported by the parent
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    /**
+     * Moves the deadline of the file to the end of the debounce interval, but no later than
+     * {@link #MAX_DELAY_NANOS} after the first event of the burst.
+     */
+    private void schedule(Path file) {
+        long now = System.nanoTime();
+        Burst burst = pending.computeIfAbsent(file, ignored -> new Burst(now));
+        burst.deadline = Math.min(now + DEBOUNCE_NANOS, burst.start + MAX_DELAY_NANOS);
+    }
+
+    private void rehashDue() throws IOException {
+        long now = System.nanoTime();
+        boolean written = false;
+
+        Iterator<Map.Entry<Path, Burst>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Burst> entry = iterator.next();
+            if (entry.getValue().deadline - now <= 0) {
+                iterator.remove();
+                written |= rehash(entry.getKey());
+            }
+        }
+
+        if (written) {
+            flush();
+        }
+    }
+
+    private boolean rehash(Path file) throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            resultWriter.write(removedDirectories.remove(file) ? REMOVED_DIRECTORY_TAG : REMOVED_TAG, 0,
+                    file.toString());
+            return true;
+        } catch (IOException e) {
+            attrs = null;
+        }
+        removedDirectories.remove(file);
+
+        if (attrs != null && attrs.isDirectory()) {
+            return false;
+        }
+
+        long hash;
+        try {
+            hash = hashVisitor.hash(file, attrs);
+        } catch (IOException e) {
+            hash = 0;
+        }
+        resultWriter.write(hashVisitor.isTreeHashed(attrs) ? TREE_UPDATED_TAG : UPDATED_TAG, hash, file.toString());
+        return true;
+    }
+}
@@ -0,0 +1,78 @@
+package ru.ifmo.rain.hakimov.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Computes directory digests of a Merkle tree over the walked files.
+ * Digest of a directory is the hash of its children sorted by name, each encoded as
+ * name, zero byte, kind ({@code f} or {@code d}) and the child's hash.
+ * Directory digests are written as {@code D <hash> <path>} lines after all of the directory's children.
+ */
+class MerkleDigests {
+    static final char DIRECTORY_TAG = 'D';
+
+    private static class Child {
+        final String name;
+        final byte kind;
+        final long hash;
+
+        Child(String name, byte kind, long hash) {
+            this.name = name;
+            this.kind = kind;
+            this.hash = hash;
+        }
+    }
+
+    private final HashFunction hashFunction;
+    private final Deque<List<Child>> directories = new ArrayDeque<>();
+
+    MerkleDigests(HashFunction hashFunction) {
+        this.hashFunction = hashFunction;
+    }
+
+    void enterDirectory() {
+        directories.push(new ArrayList<>());
+    }
+
+    void addFile(String pathName, long hash) {
+        if (!directories.isEmpty()) {
+            directories.peek().add(new Child(name(Paths.get(pathName)), (byte) 'f', hash));
+        }
+    }
+
+    long leaveDirectory(Path dir) {
+        List<Child> children = directories.pop();
+        children.sort(Comparator.comparing(child -> child.name));
+
+        int hashBytes = hashFunction.bits() / 8;
+        HashFunction.Hasher hasher = hashFunction.newHasher();
+        for (Child child : children) {
+            byte[] name = child.name.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer entry = ByteBuffer.allocate(name.length + 2 + hashBytes);
+            entry.put(name).put((byte) 0).put(child.kind);
+            for (int shift = (hashBytes - 1) * 8; shift >= 0; shift -= 8) {
+                entry.put((byte) (child.hash >>> shift));
+            }
+            hasher.update(entry.flip());
+        }
+
+        long digest = hasher.finish();
+        if (!directories.isEmpty()) {
+            directories.peek().add(new Child(name(dir), (byte) 'd', digest));
+        }
+        return digest;
+    }
+
+    private static String name(Path path) {
+        Path name = path.getFileName();
+        return name == null ? path.toString() : name.toString();
+    }
+}
@@ -0,0 +1,112 @@
+package ru.ifmo.rain.hakimov.walk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+public class ParallelHashFileVisitor extends HashFileVisitor implements AutoCloseable {
+    private static final int PENDING_PER_THREAD = 64;
+
+    private static final Future<Long> NO_HASH = CompletableFuture.completedFuture(0L);
+
+    private interface PendingAction {
+        void run(long hashCode) throws IOException;
+    }
+
+    private static class PendingResult {
+        final Future<Long> hash;
+        final String pathName;
+        final PendingAction action;
+
+        PendingResult(Future<Long> hash, String pathName, PendingAction action) {
+            this.hash = hash;
+            this.pathName = pathName;
+            this.action = action;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final Queue<PendingResult> pending;
+    private final int maxPending;
+
+    ParallelHashFileVisitor(ResultWriter resultWriter, HashCache cache, WalkStatistics statistics,
+                            WalkOptions options) {
+        super(resultWriter, cache, statistics, options);
+        final int threadsNumber = options.threads;
+
+        if (threadsNumber <= 0) {
+            throw new IllegalArgumentException("Incorrect number of threads (<= 0)!");
+        }
+
+        pool = new ForkJoinPool(threadsNumber);
+        pending = new ArrayDeque<>();
+        maxPending = threadsNumber * PENDING_PER_THREAD;
+    }
+
+    @Override
+    protected void hashFile(Path file, BasicFileAttributes attrs) throws IOException {
+        String pathName = file.toString();
+        char tag = tag(attrs);
+        enqueue(pool.submit(() -> hash(file, attrs)), pathName, hashCode -> super.log(tag, hashCode, pathName));
+    }
+
+    @Override
+    protected void log(char tag, long hashCode, String pathName) throws IOException {
+        enqueue(CompletableFuture.completedFuture(hashCode), pathName,
+                ignored -> super.log(tag, hashCode, pathName));
+    }
+
+    @Override
+    protected void enterDirectory(Path dir) throws IOException {
+        enqueue(NO_HASH, dir.toString(), ignored -> super.enterDirectory(dir));
+    }
+
+    @Override
+    protected void leaveDirectory(Path dir) throws IOException {
+        enqueue(NO_HASH, dir.toString(), ignored -> super.leaveDirectory(dir));
+    }
+
+    private void enqueue(Future<Long> hash, String pathName, PendingAction action) throws IOException {
+        pending.add(new PendingResult(hash, pathName, action));
+
+        while (pending.size() > maxPending || (!pending.isEmpty() && pending.peek().hash.isDone())) {
+            writeHead();
+        }
+    }
+
+    private void writeHead() throws IOException {
+        PendingResult result = pending.poll();
+        long hashCode;
+
+        try {
+            hashCode = result.hash.get();
+        } catch (ExecutionException e) {
+            hashCode = 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + result.pathName);
+        }
+
+        result.action.run(hashCode);
+    }
+
+    @Override
+    void flush() throws IOException {
+        while (!pending.isEmpty()) {
+            writeHead();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
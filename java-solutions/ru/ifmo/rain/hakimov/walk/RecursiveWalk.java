@@ -7,16 +7,84 @@ import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class RecursiveWalk {
-    private static void recursiveWalk(Path inputPath, Path outputPath) {
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private static void recursiveWalk(Path inputPath, Path outputPath, WalkOptions options) {
+        WalkStatistics statistics = new WalkStatistics();
+        if (options.stats) {
+            statistics.register();
+        }
+
+        CountDownLatch finished = new CountDownLatch(1);
+        HashCache cache = openCache(options.cacheFileName);
+        try (cache) {
+            recursiveWalk(inputPath, outputPath, options, cache, statistics, finished);
+        } catch (IOException e) {
+            System.err.println("Unable to save hash cache: " + e.getMessage());
+        } finally {
+            if (options.stats) {
+                statistics.unregister();
+                statistics.printSummary(System.err);
+            }
+            finished.countDown();
+        }
+    }
+
+    /**
+     * The cache only saves work, so files are hashed anyway if it can't be opened.
+     */
+    private static HashCache openCache(String cacheFileName) {
+        if (cacheFileName == null) {
+            return null;
+        }
+
+        try {
+            return HashCache.open(Paths.get(cacheFileName));
+        } catch (InvalidPathException | IOException e) {
+            System.err.println("Unable to use hash cache, walking without it: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void recursiveWalk(Path inputPath, Path outputPath, WalkOptions options, HashCache cache,
+                                      WalkStatistics statistics, CountDownLatch finished) {
         try (BufferedReader fileReader = Files.newBufferedReader(inputPath)) {
-            try (BufferedWriter fileWriter = Files.newBufferedWriter(outputPath)) {
-                HashFileVisitor hashVisitor = new HashFileVisitor(fileWriter);
-                String pathName;
+            try (BufferedWriter fileWriter = Files.newBufferedWriter(outputPath);
+                 ResultWriter resultWriter = new ResultWriter(fileWriter, options.hashFunction.bits(), statistics)) {
+                HashFileVisitor hashVisitor;
+                List<String> pathNames;
 
-                while ((pathName = fileReader.readLine()) != null) {
-                    hashVisitor.hashFile(pathName, fileWriter, hashVisitor);
+                if (options.dedup) {
+                    DuplicateFileVisitor duplicateVisitor = new DuplicateFileVisitor(resultWriter, cache,
+                            statistics, options);
+                    pathNames = walkAll(fileReader, duplicateVisitor, false);
+                    duplicateVisitor.writeDuplicates();
+                    hashVisitor = duplicateVisitor;
+                } else if (options.isParallel()) {
+                    try (ParallelHashFileVisitor parallelVisitor = new ParallelHashFileVisitor(resultWriter,
+                            cache, statistics, options)) {
+                        pathNames = walkAll(fileReader, parallelVisitor, options.plan);
+                        hashVisitor = parallelVisitor;
+                    }
+                } else {
+                    hashVisitor = new HashFileVisitor(resultWriter, cache, statistics, options);
+                    pathNames = walkAll(fileReader, hashVisitor, options.plan);
+                }
+
+                if (options.indexFileName != null) {
+                    writeIndex(hashVisitor, options.indexFileName);
+                }
+
+                if (options.watch) {
+                    HashWatcher watcher = new HashWatcher(hashVisitor, resultWriter, cache);
+                    stopOnShutdown(watcher, finished);
+                    watcher.watch(pathNames);
                 }
             } catch (IOException e) {
                 System.err.println("Unable to write to output file: " + e.getMessage());
@@ -26,31 +94,76 @@ public class RecursiveWalk {
         }
     }
 
-    private static boolean invalidArguments(String[] args) {
-        return args == null || args.length != 2 || args[0] == null || args[1] == null;
+    /**
+     * Watch mode only ends with the process, so on shutdown the watcher is stopped and the walk is given time
+     * to close the output, save the cache and print statistics.
+     */
+    private static void stopOnShutdown(HashWatcher watcher, CountDownLatch finished) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                watcher.stop();
+                finished.await(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (IOException e) {
+                System.err.println("Unable to stop watching: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+    }
+
+    private static void writeIndex(HashFileVisitor hashVisitor, String indexFileName) {
+        try {
+            hashVisitor.writeIndex(Paths.get(indexFileName));
+        } catch (InvalidPathException | IOException e) {
+            System.err.println("Unable to write index file: " + e.getMessage());
+        }
+    }
+
+    private static List<String> walkAll(BufferedReader fileReader, HashFileVisitor hashVisitor, boolean plan)
+            throws IOException {
+        List<String> pathNames = new ArrayList<>();
+        String pathName;
+
+        while ((pathName = fileReader.readLine()) != null) {
+            if (!plan) {
+                hashVisitor.walk(pathName);
+            }
+            pathNames.add(pathName);
+        }
+
+        if (plan) {
+            new WalkPlanner(hashVisitor).walk(pathNames);
+        }
+        return pathNames;
     }
 
     public static void main(String[] args) {
-        if (invalidArguments(args)) {
-            System.err.println("USAGE: java RecursiveWalk <input_file_path> <output_file_path>");
-        } else {
-            Path inputFileName;
-            Path outputFileName;
+        WalkOptions options;
 
-            try {
-                inputFileName = Paths.get(args[0]);
-                outputFileName = Paths.get(args[1]);
+        try {
+            options = WalkOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(WalkOptions.USAGE);
+            return;
+        }
 
-                Path parentDir = outputFileName.getParent();
+        Path inputFileName;
+        Path outputFileName;
 
-                if (parentDir != null && !Files.exists(parentDir)) {
-                    Files.createDirectory(parentDir);
-                }
+        try {
+            inputFileName = Paths.get(options.inputFileName);
+            outputFileName = Paths.get(options.outputFileName);
 
-                recursiveWalk(inputFileName, outputFileName);
-            } catch (InvalidPathException | IOException e) {
-                System.err.println("Unable to create one of the output file's parent directories: " + e.getMessage());
+            Path parentDir = outputFileName.getParent();
+
+            if (parentDir != null && !Files.exists(parentDir)) {
+                Files.createDirectory(parentDir);
             }
+
+            recursiveWalk(inputFileName, outputFileName, options);
+        } catch (InvalidPathException | IOException e) {
+            System.err.println("Unable to create one of the output file's parent directories: " + e.getMessage());
         }
     }
 }
@@ -0,0 +1,206 @@
+package ru.ifmo.rain.hakimov.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes {@code [<tag> ]<hash> <path>} lines and empty separator lines on a dedicated thread.
+ * Results are handed over in reusable batches through a bounded queue and formatted straight into a char buffer.
+ */
+class ResultWriter implements Closeable {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final int BATCH_SIZE = 1024;
+    private static final int BATCHES = 8;
+    private static final int BUFFER_SIZE = 1 << 16;
+    static final char NO_TAG = 0;
+
+    private static class Batch {
+        final char[] tags = new char[BATCH_SIZE];
+        final long[] hashes = new long[BATCH_SIZE];
+        final String[] pathNames = new String[BATCH_SIZE];
+        int size;
+        boolean flush;
+        boolean last;
+    }
+
+    private final Writer writer;
+    private final int hexDigits;
+    private final WalkStatistics statistics;
+    private final BlockingQueue<Batch> free = new ArrayBlockingQueue<>(BATCHES);
+    private final BlockingQueue<Batch> full = new ArrayBlockingQueue<>(BATCHES);
+    private final Thread thread;
+    private volatile IOException failure;
+    private Batch current;
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+
+    ResultWriter(Writer writer, int hashBits, WalkStatistics statistics) {
+        this.writer = writer;
+        this.hexDigits = hashBits / 4;
+        this.statistics = statistics;
+
+        for (int i = 0; i < BATCHES; i++) {
+            free.add(new Batch());
+        }
+        current = free.poll();
+
+        thread = new Thread(this::run, "walk-result-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void write(long hash, String pathName) throws IOException {
+        write(NO_TAG, hash, pathName);
+    }
+
+    void write(char tag, long hash, String pathName) throws IOException {
+        checkFailure();
+
+        current.tags[current.size] = tag;
+        current.hashes[current.size] = hash;
+        current.pathNames[current.size] = pathName;
+        if (++current.size == BATCH_SIZE) {
+            submit(false, false);
+        }
+    }
+
+    /**
+     * Hands the results written so far over to the writer thread and asks it to flush them to the output.
+     */
+    void flush() throws IOException {
+        checkFailure();
+        submit(true, false);
+    }
+
+    void writeSeparator() throws IOException {
+        write(0, null);
+    }
+
+    private void submit(boolean flush, boolean last) throws IOException {
+        current.flush = flush;
+        current.last = last;
+        try {
+            full.put(current);
+            current = last ? null : free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing results");
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void run() {
+        WalkStatistics.Recorder recorder = statistics.recorder();
+
+        try {
+            while (true) {
+                Batch batch = full.take();
+                if (failure == null) {
+                    long start = System.nanoTime();
+                    try {
+                        format(batch);
+                        if (batch.flush || batch.last) {
+                            flushBuffer();
+                        }
+                        if (batch.flush) {
+                            writer.flush();
+                        }
+                        recorder.record(WalkStatistics.Phase.WRITE, batch.size, System.nanoTime() - start);
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+
+                boolean last = batch.last;
+                Arrays.fill(batch.pathNames, 0, batch.size, null);
+                batch.size = 0;
+                batch.flush = false;
+                free.put(batch);
+
+                if (last) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("Result writer was interrupted");
+        }
+    }
+
+    private void format(Batch batch) throws IOException {
+        for (int i = 0; i < batch.size; i++) {
+            String pathName = batch.pathNames[i];
+            if (pathName == null) {
+                formatSeparator();
+                continue;
+            }
+
+            char tag = batch.tags[i];
+            int length = (tag == NO_TAG ? 0 : 2) + hexDigits + 1 + pathName.length() + LINE_SEPARATOR.length();
+
+            if (buffer.length - position < length) {
+                flushBuffer();
+                if (buffer.length < length) {
+                    buffer = new char[length];
+                }
+            }
+
+            if (tag != NO_TAG) {
+                buffer[position++] = tag;
+                buffer[position++] = ' ';
+            }
+
+            long hash = batch.hashes[i];
+            for (int digit = hexDigits - 1; digit >= 0; digit--) {
+                buffer[position + digit] = HEX_DIGITS[(int) hash & 0xf];
+                hash >>>= 4;
+            }
+            position += hexDigits;
+            buffer[position++] = ' ';
+            pathName.getChars(0, pathName.length(), buffer, position);
+            position += pathName.length();
+            LINE_SEPARATOR.getChars(0, LINE_SEPARATOR.length(), buffer, position);
+            position += LINE_SEPARATOR.length();
+        }
+    }
+
+    private void formatSeparator() throws IOException {
+        if (buffer.length - position < LINE_SEPARATOR.length()) {
+            flushBuffer();
+        }
+        LINE_SEPARATOR.getChars(0, LINE_SEPARATOR.length(), buffer, position);
+        position += LINE_SEPARATOR.length();
+    }
+
+    private void flushBuffer() throws IOException {
+        writer.write(buffer, 0, position);
+        position = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (current == null) {
+            return;
+        }
+
+        submit(false, true);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for result writer");
+        }
+        checkFailure();
+        writer.flush();
+    }
+}
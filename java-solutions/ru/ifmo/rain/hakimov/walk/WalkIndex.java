@@ -0,0 +1,251 @@
+package ru.ifmo.rain.hakimov.walk;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.OptionalLong;
+
+/**
+ * Binary index of walk results sorted by path, meant to be memory-mapped.
+ * <p>
+ * Layout: a 32-byte header ({@code magic, version, count, hash bits, reserved, string pool offset}),
+ * a table of fixed-width records ({@code path offset, path length, tag, reserved, hash}) sorted by
+ * the unsigned UTF-8 bytes of the path, and a pool of UTF-8 paths. All numbers are big-endian.
+ */
+public class WalkIndex implements Closeable {
+    private static final int MAGIC = 0x57494458;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 24;
+
+    /**
+     * Collects index entries during the walk.
+     */
+    static class Builder {
+        private static class Entry {
+            final byte[] path;
+            final char tag;
+            final long hash;
+
+            Entry(byte[] path, char tag, long hash) {
+                this.path = path;
+                this.tag = tag;
+                this.hash = hash;
+            }
+        }
+
+        private final List<Entry> entries = new ArrayList<>();
+        private final int hashBits;
+
+        Builder(int hashBits) {
+            this.hashBits = hashBits;
+        }
+
+        void add(char tag, long hash, String pathName) {
+            entries.add(new Entry(pathName.getBytes(StandardCharsets.UTF_8), tag, hash));
+        }
+
+        /**
+         * Writes the index. When a path was reported several times, the last record wins.
+         */
+        void write(Path indexPath) throws IOException {
+            List<Entry> sorted = new ArrayList<>(entries);
+            sorted.sort(Comparator.comparing((Entry entry) -> entry.path, Arrays::compareUnsigned));
+
+            List<Entry> unique = new ArrayList<>(sorted.size());
+            for (Entry entry : sorted) {
+                if (!unique.isEmpty() && Arrays.equals(unique.get(unique.size() - 1).path, entry.path)) {
+                    unique.set(unique.size() - 1, entry);
+                } else {
+                    unique.add(entry);
+                }
+            }
+
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(
+                    FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                            StandardOpenOption.WRITE)), 1 << 16))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(unique.size());
+                output.writeInt(hashBits);
+                output.writeInt(0);
+                output.writeLong(HEADER_SIZE + (long) unique.size() * RECORD_SIZE);
+
+                long offset = 0;
+                for (Entry entry : unique) {
+                    output.writeLong(offset);
+                    output.writeInt(entry.path.length);
+                    output.writeChar(entry.tag);
+                    output.writeShort(0);
+                    output.writeLong(entry.hash);
+                    offset += entry.path.length;
+                }
+
+                for (Entry entry : unique) {
+                    output.write(entry.path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Receives paths of two indexes in sorted order. Index in an index that lacks the path is {@code -1}.
+     */
+    public interface JoinVisitor {
+        void visit(String pathName, int leftIndex, int rightIndex) throws IOException;
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final int hashBits;
+    private final long poolOffset;
+
+    private WalkIndex(FileChannel channel) throws IOException {
+        this.channel = channel;
+        if (channel.size() > Integer.MAX_VALUE) {
+            throw new IOException("Index is too large to be mapped: " + channel.size() + " bytes");
+        }
+
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a walk index");
+        }
+
+        long count = buffer.getLong(8);
+        hashBits = buffer.getInt(16);
+        poolOffset = buffer.getLong(24);
+        if (count < 0 || poolOffset != HEADER_SIZE + count * RECORD_SIZE || poolOffset > buffer.capacity()) {
+            throw new IOException("Corrupted walk index header");
+        }
+        size = (int) count;
+    }
+
+    public static WalkIndex open(Path indexPath) throws IOException {
+        FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ);
+        try {
+            return new WalkIndex(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int hashBits() {
+        return hashBits;
+    }
+
+    private int record(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    private int pathOffset(int index) {
+        return (int) (poolOffset + buffer.getLong(record(index)));
+    }
+
+    private int pathLength(int index) {
+        return buffer.getInt(record(index) + 8);
+    }
+
+    public String path(int index) {
+        byte[] bytes = new byte[pathLength(index)];
+        buffer.get(pathOffset(index), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public char tag(int index) {
+        return buffer.getChar(record(index) + 12);
+    }
+
+    public long hash(int index) {
+        return buffer.getLong(record(index) + 16);
+    }
+
+    /**
+     * Compares the path of the record with the given UTF-8 bytes without decoding it.
+     */
+    private static int compare(ByteBuffer buffer, int offset, int length, ByteBuffer other, int otherOffset, int otherLength) {
+        int common = Math.min(length, otherLength);
+        int mismatch = buffer.slice(offset, common).mismatch(other.slice(otherOffset, common));
+        if (mismatch >= 0) {
+            return Byte.compareUnsigned(buffer.get(offset + mismatch), other.get(otherOffset + mismatch));
+        }
+        return Integer.compare(length, otherLength);
+    }
+
+    /**
+     * Returns index of the path, or {@code -(insertion point) - 1} if there is no such path.
+     */
+    public int find(String pathName) {
+        ByteBuffer key = ByteBuffer.wrap(pathName.getBytes(StandardCharsets.UTF_8));
+        int low = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(buffer, pathOffset(middle), pathLength(middle), key, 0, key.capacity());
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -low - 1;
+    }
+
+    public OptionalLong lookup(String pathName) {
+        int index = find(pathName);
+        return index >= 0 ? OptionalLong.of(hash(index)) : OptionalLong.empty();
+    }
+
+    /**
+     * Walks two indexes side by side in a single linear pass.
+     */
+    public static void mergeJoin(WalkIndex left, WalkIndex right, JoinVisitor visitor) throws IOException {
+        int i = 0;
+        int j = 0;
+
+        while (i < left.size || j < right.size) {
+            int comparison;
+            if (i == left.size) {
+                comparison = 1;
+            } else if (j == right.size) {
+                comparison = -1;
+            } else {
+                comparison = compare(left.buffer, left.pathOffset(i), left.pathLength(i),
+                        right.buffer, right.pathOffset(j), right.pathLength(j));
+            }
+
+            if (comparison < 0) {
+                visitor.visit(left.path(i), i++, -1);
+            } else if (comparison > 0) {
+                visitor.visit(right.path(j), -1, j++);
+            } else {
+                visitor.visit(left.path(i), i++, j++);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,150 @@
+package ru.ifmo.rain.hakimov.walk;
+
+class WalkOptions {
+    static final String USAGE = "USAGE: java RecursiveWalk [--threads <count>] [--cache <cache_file_path>] [--hash fnv32|fnv64|crc32c|xxh64] [--dedup] [--merkle] [--tree-hash <chunk_size>[K|M|G]] [--watch] [--stats] [--index <index_file_path>] [--plan] <input_file_path> <output_file_path>";
+
+    // Keeps the concatenated chunk hashes of any file within an array
+    private static final long MIN_TREE_CHUNK_SIZE = 4096;
+
+    String inputFileName;
+    String outputFileName;
+    int threads = 0;
+    String cacheFileName;
+    HashFunction hashFunction = HashFunctions.FNV32;
+    boolean dedup;
+    boolean merkle;
+    long treeChunkSize;
+    boolean watch;
+    boolean stats;
+    String indexFileName;
+    boolean plan;
+
+    private WalkOptions() {
+    }
+
+    boolean isParallel() {
+        return threads > 0;
+    }
+
+    static WalkOptions parse(String[] args) {
+        if (args == null) {
+            throw new IllegalArgumentException("No arguments provided");
+        }
+
+        WalkOptions options = new WalkOptions();
+        int index = 0;
+
+        while (index < args.length - 2) {
+            String option = args[index++];
+
+            if (option == null) {
+                throw new IllegalArgumentException("Null option");
+            }
+
+            switch (option) {
+                case "-j":
+                case "--threads":
+                    options.threads = parsePositive(option, value(args, index++));
+                    break;
+                case "--cache":
+                    options.cacheFileName = value(args, index++);
+                    break;
+                case "--hash":
+                    options.hashFunction = HashFunctions.forName(value(args, index++));
+                    break;
+                case "--dedup":
+                    options.dedup = true;
+                    break;
+                case "--merkle":
+                    options.merkle = true;
+                    break;
+                case "--tree-hash":
+                    options.treeChunkSize = parseSize(option, value(args, index++));
+                    if (options.treeChunkSize < MIN_TREE_CHUNK_SIZE) {
+                        throw new IllegalArgumentException(option + " should be at least 4K");
+                    }
+                    break;
+                case "--watch":
+                    options.watch = true;
+                    break;
+                case "--stats":
+                    options.stats = true;
+                    break;
+                case "--index":
+                    options.indexFileName = value(args, index++);
+                    break;
+                case "--plan":
+                    options.plan = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+
+        if (args.length - index != 2 || args[index] == null || args[index + 1] == null) {
+            throw new IllegalArgumentException("Expected input and output file paths");
+        }
+
+        if (options.dedup && options.isParallel()) {
+            throw new IllegalArgumentException("--dedup can't be combined with --threads");
+        }
+        if (options.dedup && options.merkle) {
+            throw new IllegalArgumentException("--dedup can't be combined with --merkle");
+        }
+        if (options.dedup && options.indexFileName != null) {
+            throw new IllegalArgumentException("--dedup can't be combined with --index");
+        }
+        if (options.dedup && options.plan) {
+            throw new IllegalArgumentException("--dedup can't be combined with --plan");
+        }
+        if (options.watch && (options.dedup || options.merkle)) {
+            throw new IllegalArgumentException("--watch can't be combined with --dedup or --merkle");
+        }
+
+        options.inputFileName = args[index];
+        options.outputFileName = args[index + 1];
+        return options;
+    }
+
+    private static String value(String[] args, int index) {
+        if (index >= args.length - 2 || args[index] == null) {
+            throw new IllegalArgumentException("Missing value for option " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    private static long parseSize(String option, String value) {
+        long multiplier = 1;
+        String digits = value;
+
+        if (!value.isEmpty()) {
+            int unit = "KMG".indexOf(Character.toUpperCase(value.charAt(value.length() - 1)));
+            if (unit >= 0) {
+                multiplier = 1L << (10 * (unit + 1));
+                digits = value.substring(0, value.length() - 1);
+            }
+        }
+
+        try {
+            long result = Long.parseLong(digits);
+            if (result <= 0 || result > Long.MAX_VALUE / multiplier) {
+                throw new IllegalArgumentException(option + " should be positive: " + value);
+            }
+            return result * multiplier;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " should be a size: " + value);
+        }
+    }
+
+    private static int parsePositive(String option, String value) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result <= 0) {
+                throw new IllegalArgumentException(option + " should be positive: " + value);
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " should be a number: " + value);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package ru.ifmo.rain.hakimov.walk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Walks the whole input list at once: repeated roots and roots nested in another directory root are walked only once,
+ * and the remaining roots are walked in path order, which keeps entries of the same parent directory together.
+ * Results are written in the original input order, exactly as separate walks would write them. A walk is written
+ * as it goes when its only root is the next one to be written, so input that is already in path order
+ * isn't buffered; other walks are buffered until the last root that needs them is written.
+ * <p>
+ * Only roots whose absolute normalized path is their real path are shared, so roots that involve symbolic links
+ * or don't exist are walked on their own, where they appear in the input.
+ */
+class WalkPlanner {
+    static class Result {
+        final char tag;
+        final long hash;
+        final String pathName;
+
+        Result(char tag, long hash, String pathName) {
+            this.tag = tag;
+            this.hash = hash;
+            this.pathName = pathName;
+        }
+    }
+
+    private static class Task {
+        final Path root;
+        boolean walked;
+        // Buffered results while some roots still need them
+        List<Result> results;
+        int consumers;
+
+        Task(Path root) {
+            this.root = root;
+        }
+    }
+
+    private final HashFileVisitor hashVisitor;
+
+    WalkPlanner(HashFileVisitor hashVisitor) {
+        this.hashVisitor = hashVisitor;
+    }
+
+    void walk(List<String> pathNames) throws IOException {
+        Path[] roots = new Path[pathNames.size()];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = sharedRoot(pathNames.get(i));
+        }
+
+        Map<Path, Task> tasks = plan(roots);
+        Task[] owners = new Task[roots.length];
+        for (int i = 0; i < roots.length; i++) {
+            if (roots[i] != null) {
+                owners[i] = owner(tasks, roots[i]);
+                owners[i].consumers++;
+            }
+        }
+
+        int next = 0;
+        for (Task task : tasks.values()) {
+            next = writeWalked(pathNames, roots, owners, next);
+            task.walked = true;
+            if (next < roots.length && owners[next] == task && task.consumers == 1 && task.root.equals(roots[next])) {
+                task.consumers--;
+                walkDirectly(pathNames.get(next++));
+            } else {
+                task.results = new ArrayList<>();
+                walkCaptured(task);
+            }
+        }
+        writeWalked(pathNames, roots, owners, next);
+    }
+
+    /**
+     * Writes results of the roots starting from {@code next} in input order, until a root whose task isn't walked yet.
+     * Roots that aren't shared are walked here. Returns the index of the first root that isn't written.
+     */
+    private int writeWalked(List<String> pathNames, Path[] roots, Task[] owners, int next) throws IOException {
+        for (; next < roots.length; next++) {
+            Task task = owners[next];
+            if (task == null) {
+                walkDirectly(pathNames.get(next));
+            } else if (!task.walked) {
+                break;
+            } else {
+                emit(Paths.get(pathNames.get(next)), roots[next], task);
+                if (--task.consumers == 0) {
+                    task.results = null;
+                }
+            }
+        }
+        return next;
+    }
+
+    private void walkDirectly(String pathName) throws IOException {
+        hashVisitor.walk(pathName);
+        hashVisitor.flush();
+    }
+
+    private void walkCaptured(Task task) throws IOException {
+        hashVisitor.capture(task.results);
+        try {
+            hashVisitor.walk(task.root.toString());
+            hashVisitor.flush();
+        } finally {
+            hashVisitor.capture(null);
+        }
+    }
+
+    private static Path sharedRoot(String pathName) {
+        try {
+            Path path = Paths.get(pathName);
+            Path real = path.toRealPath();
+            return real.equals(path.toAbsolutePath().normalize()) ? real : null;
+        } catch (InvalidPathException | IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a task for every shared root that isn't inside another shared directory root.
+     * Tasks are sorted by path, so ancestors come before their descendants.
+     */
+    private static SortedMap<Path, Task> plan(Path[] roots) {
+        SortedSet<Path> sorted = new TreeSet<>();
+        for (Path root : roots) {
+            if (root != null) {
+                sorted.add(root);
+            }
+        }
+
+        SortedMap<Path, Task> tasks = new TreeMap<>();
+        for (Path root : sorted) {
+            if (owner(tasks, root) == null) {
+                tasks.put(root, new Task(root));
+            }
+        }
+        return tasks;
+    }
+
+    private static Task owner(Map<Path, Task> tasks, Path root) {
+        Task owner = null;
+        for (Path ancestor = root; ancestor != null; ancestor = ancestor.getParent()) {
+            Task task = tasks.get(ancestor);
+            if (task != null && (ancestor.equals(root) || Files.isDirectory(ancestor))) {
+                owner = task;
+            }
+        }
+        return owner;
+    }
+
+    private void emit(Path path, Path root, Task task) throws IOException {
+        boolean whole = task.root.equals(root);
+
+        for (Result result : task.results) {
+            Path walked = Paths.get(result.pathName);
+            if (whole || walked.startsWith(root)) {
+                hashVisitor.emit(result.tag, result.hash, path.resolve(root.relativize(walked)).toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package ru.ifmo.rain.hakimov.walk;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToLongFunction;
+
+/**
+ * Per-phase counters and latency histograms of a walk.
+ * Every thread records into its own {@link Recorder} with plain writes, recorders are only summed up on read.
+ */
+public class WalkStatistics implements WalkStatisticsMXBean {
+    /**
+     * Measured phases. {@code WRITE} counts lines, but its latency is recorded per written batch.
+     */
+    enum Phase {
+        TRAVERSAL, OPEN, READ_HASH, WRITE
+    }
+
+    private static final int BUCKETS = Long.SIZE;
+    private static final String OBJECT_NAME = "ru.ifmo.rain.hakimov.walk:type=WalkStatistics";
+
+    static class Recorder {
+        private final long[] counts = new long[Phase.values().length];
+        private final long[] nanos = new long[Phase.values().length];
+        private final long[][] histograms = new long[Phase.values().length][BUCKETS];
+        private long files;
+        private long failures;
+        private long bytes;
+
+        void record(Phase phase, long elapsedNanos) {
+            record(phase, 1, elapsedNanos);
+        }
+
+        void record(Phase phase, int operations, long elapsedNanos) {
+            int index = phase.ordinal();
+            counts[index] += operations;
+            nanos[index] += elapsedNanos;
+            histograms[index][BUCKETS - 1 - Long.numberOfLeadingZeros(Math.max(1, elapsedNanos))]++;
+        }
+
+        void fileHashed() {
+            files++;
+        }
+
+        void bytesRead(long count) {
+            bytes += count;
+        }
+
+        void fileFailed() {
+            failures++;
+        }
+    }
+
+    private final List<Recorder> recorders = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Recorder> recorder = ThreadLocal.withInitial(() -> {
+        Recorder created = new Recorder();
+        recorders.add(created);
+        return created;
+    });
+    private final long startNanos = System.nanoTime();
+    private ObjectName objectName;
+
+    Recorder recorder() {
+        return recorder.get();
+    }
+
+    void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName(OBJECT_NAME);
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            objectName = null;
+            System.err.println("Unable to register walk statistics MBean: " + e.getMessage());
+        }
+    }
+
+    void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                System.err.println("Unable to unregister walk statistics MBean: " + e.getMessage());
+            }
+            objectName = null;
+        }
+    }
+
+    private long sum(ToLongFunction<Recorder> field) {
+        return recorders.stream().mapToLong(field).sum();
+    }
+
+    @Override
+    public long getFilesHashed() {
+        return sum(r -> r.files);
+    }
+
+    @Override
+    public long getFailedFiles() {
+        return sum(r -> r.failures);
+    }
+
+    @Override
+    public long getBytesRead() {
+        return sum(r -> r.bytes);
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return perSecond(getFilesHashed());
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return perSecond(getBytesRead());
+    }
+
+    private double perSecond(long value) {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed == 0 ? 0 : value * 1e9 / elapsed;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseCounts() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            result.put(phase.name(), sum(r -> r.counts[phase.ordinal()]));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseMillis() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            result.put(phase.name(), sum(r -> r.nanos[phase.ordinal()]) / 1_000_000);
+        }
+        return result;
+    }
+
+    @Override
+    public long[] getLatencyHistogram(String phase) {
+        int index = Phase.valueOf(phase).ordinal();
+        long[] result = new long[BUCKETS];
+        for (Recorder r : recorders) {
+            for (int i = 0; i < BUCKETS; i++) {
+                result[i] += r.histograms[index][i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns upper bound in nanoseconds of the given latency quantile.
+     */
+    private static long quantile(long[] histogram, double quantile) {
+        long total = Arrays.stream(histogram).sum();
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen > 0 && seen >= quantile * total) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : 1L << (i + 1);
+            }
+        }
+        return 0;
+    }
+
+    void printSummary(PrintStream out) {
+        out.printf("Files hashed: %d, failed: %d, bytes read: %d%n", getFilesHashed(), getFailedFiles(), getBytesRead());
+        out.printf("Elapsed: %d ms, %.1f files/s, %.1f MiB/s%n",
+                getElapsedMillis(), getFilesPerSecond(), getBytesPerSecond() / (1 << 20));
+
+        Map<String, Long> counts = getPhaseCounts();
+        Map<String, Long> millis = getPhaseMillis();
+        for (Phase phase : Phase.values()) {
+            long[] histogram = getLatencyHistogram(phase.name());
+            out.printf("%-10s count: %d, total: %d ms, p50 < %d us, p99 < %d us%n", phase.name(),
+                    counts.get(phase.name()), millis.get(phase.name()),
+                    quantile(histogram, 0.5) / 1000, quantile(histogram, 0.99) / 1000);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ru.ifmo.rain.hakimov.walk;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link WalkStatistics}. Values are approximate while the walk is running.
+ */
+public interface WalkStatisticsMXBean {
+    long getFilesHashed();
+
+    long getFailedFiles();
+
+    long getBytesRead();
+
+    long getElapsedMillis();
+
+    double getFilesPerSecond();
+
+    double getBytesPerSecond();
+
+    /**
+     * Number of recorded operations per phase.
+     */
+    Map<String, Long> getPhaseCounts();
+
+    /**
+     * Total time spent per phase in milliseconds.
+     */
+    Map<String, Long> getPhaseMillis();
+
+    /**
+     * Latency histogram of the phase: element {@code i} counts operations that took {@code [2^i, 2^(i+1))} ns.
+     */
+    long[] getLatencyHistogram(String phase);
+}
@@ -0,0 +1,13 @@
+cd "$(dirname "$0")" || exit
+
+if [ -z "$(uname -a | grep MINGW)" ]; then SEPARATOR=":"; else SEPARATOR=";"; fi
+JUNIT=../i18n/junit-platform-console-standalone-1.6.2.jar
+
+mkdir -p out
+javac -d out *.java
+
+mv WalkTests.txt WalkTests.java
+javac -d out -cp "out${SEPARATOR}${JUNIT}" WalkTests.java
+mv WalkTests.java WalkTests.txt
+
+java -jar $JUNIT --class-path out --scan-class-path